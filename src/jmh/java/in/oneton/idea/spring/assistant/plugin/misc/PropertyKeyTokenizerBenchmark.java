@@ -0,0 +1,83 @@
+package in.oneton.idea.spring.assistant.plugin.misc;
+
+import com.google.common.base.Splitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link PropertyKeyTokenizer} against the regex based helpers it replaced. The legacy variants are copied
+ * verbatim, so that the comparison survives the removal of the originals
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertyKeyTokenizerBenchmark {
+
+    private static final Pattern PLACEHOLDER_PATTERN_ELSEIF = Pattern.compile("^(\"?\\$\\{)(.*)(:?)(.*)(}\"?)");
+
+    @Param({"spring.datasource.hikari.maximum-pool-size", "server.ssl.key_store_type", "spring.jpa.properties[0].hibernate.dialect"})
+    public String key;
+
+    @Param({"\"${spring.datasource.url:jdbc:h2:mem:test}\""})
+    public String placeholder;
+
+    @Benchmark
+    public String[] sanitisedSegmentsLegacy() {
+        final String[] splits = this.key.trim().split("\\.", -1);
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = splits[i].trim().replaceAll("_", "").replace("-", "").toLowerCase();
+        }
+        return splits;
+    }
+
+    @Benchmark
+    public String[] sanitisedSegments() {
+        return PropertyKeyTokenizer.toSanitisedSegments(this.key);
+    }
+
+    @Benchmark
+    public String[] rawSegmentsLegacy() {
+        final String[] splits = this.key.trim().split("\\.", -1);
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = splits[i].trim();
+        }
+        return splits;
+    }
+
+    @Benchmark
+    public String[] rawSegments() {
+        return PropertyKeyTokenizer.toRawSegments(this.key);
+    }
+
+    @Benchmark
+    public List<String> segmentsWithoutIndexesLegacy() {
+        return Splitter.on(".").splitToList(this.key.replaceAll("\\[\\d+]", ""));
+    }
+
+    @Benchmark
+    public List<String> segmentsWithoutIndexes() {
+        return PropertyKeyTokenizer.toSegmentsWithoutIndexes(this.key);
+    }
+
+    @Benchmark
+    public String placeholderKeyLegacy() {
+        final var matcher = PLACEHOLDER_PATTERN_ELSEIF.matcher(this.placeholder);
+        final String key = matcher.matches() ? matcher.group(2) : "";
+        return key.split("\\:")[0];
+    }
+
+    @Benchmark
+    public String placeholderKey() {
+        return PropertyKeyTokenizer.placeholderKey(this.placeholder);
+    }
+
+}
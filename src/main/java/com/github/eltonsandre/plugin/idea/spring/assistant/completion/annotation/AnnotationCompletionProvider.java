@@ -6,7 +6,6 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.completion.CompletionUtilCore;
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.util.ProcessingContext;
@@ -58,13 +57,13 @@ public class AnnotationCompletionProvider extends CompletionProvider<CompletionP
 
         final String queryWithDotDelimitedPrefixes = this.getQueryWithDotDelimitedPrefixes(textOrigin);
         final List<String> ancestralKeys = GenericUtil.getAncestralKey(textContext);
-        final List<LookupElement> suggestions = service.findSuggestionsForQueryPrefix(
-                FileType.valueOf(element.getLanguage().getDisplayName().toUpperCase()),
-                element, ancestralKeys, queryWithDotDelimitedPrefixes, null);
 
         resultSet = resultSet.withPrefixMatcher(queryWithDotDelimitedPrefixes);
-        if (suggestions != null) {
-            suggestions.forEach(resultSet::addElement);
+        final boolean truncated = service.findSuggestionsForQueryPrefix(
+                FileType.valueOf(element.getLanguage().getDisplayName().toUpperCase()),
+                element, parameters.getEditor(), ancestralKeys, queryWithDotDelimitedPrefixes, null, resultSet::addElement);
+        if (truncated) {
+            resultSet.restartCompletionOnAnyPrefixChange();
         }
 
     }
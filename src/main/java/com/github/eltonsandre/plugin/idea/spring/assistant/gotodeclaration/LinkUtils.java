@@ -1,5 +1,6 @@
 package com.github.eltonsandre.plugin.idea.spring.assistant.gotodeclaration;
 
+import in.oneton.idea.spring.assistant.plugin.misc.PropertyKeyTokenizer;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
@@ -32,9 +33,7 @@ public final class LinkUtils {
     }
 
     public static String getKeyToPlaceholder(@NotNull final String valueKey) {
-        final var key = getIndexMatcherKeyToPlaceholder(valueKey, 2);
-        final String[] split = key.split("\\:");
-        return split[0];
+        return PropertyKeyTokenizer.placeholderKey(valueKey);
     }
 
     public static boolean isPlaceholderContainer(@NotNull final String valueKey) {
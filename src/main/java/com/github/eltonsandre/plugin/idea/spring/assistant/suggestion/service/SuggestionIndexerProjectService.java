@@ -4,6 +4,12 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Single entry point for (re)indexing the modules of a project.
+ * <p>
+ * Requests are debounced & merged per module, so a burst of events (gradle sync, maven import, compilation) results in a
+ * single index run per affected module. Modules that have a spring config file open in an editor are indexed first
+ */
 public interface SuggestionIndexerProjectService {
 
     static SuggestionIndexerProjectService getInstance(@NotNull final Project project) {
@@ -14,4 +20,19 @@ public interface SuggestionIndexerProjectService {
 
     void index(Module[] modules);
 
+    /**
+     * @return number of modules waiting to be indexed
+     */
+    int getQueueDepth();
+
+    /**
+     * @return number of modules requested to be indexed so far, including the ones that got merged with a pending request
+     */
+    long getRequestCount();
+
+    /**
+     * @return number of module index runs so far
+     */
+    long getRunCount();
+
 }
@@ -1,23 +1,65 @@
 package com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service;
 
 import com.github.eltonsandre.plugin.idea.spring.assistant.common.LogUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import gnu.trove.THashSet;
 import in.oneton.idea.spring.assistant.plugin.suggestion.service.SuggestionService;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SuggestionIndexerProjectServiceImpl implements SuggestionIndexerProjectService {
+import static com.intellij.util.Alarm.ThreadToUse.SWING_THREAD;
+
+public class SuggestionIndexerProjectServiceImpl implements SuggestionIndexerProjectService, Disposable {
 
     private static final Logger log = Logger.getInstance(SuggestionIndexerProjectServiceImpl.class);
 
+    /**
+     * Build tools fire several events per sync/import, lets wait for them to settle before indexing
+     */
+    private static final int DEBOUNCE_DELAY_MILLIS = 500;
+    /**
+     * Modules left over by a cancelled drain are picked up again after this delay, so that cancelling is not undone right away
+     */
+    private static final int RESUME_AFTER_CANCEL_DELAY_MILLIS = 30_000;
+
     private final Project project;
+    private final Alarm alarm;
+    /**
+     * Modules waiting to be indexed, in the order they were first requested. Guarded by itself
+     */
+    private final Set<Module> pendingModules = new LinkedHashSet<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    @Nullable
+    private volatile ProgressIndicator currentIndicator;
+    /**
+     * Module the drain is currently working on, which is no longer part of {@link #pendingModules}
+     */
+    @Nullable
+    private volatile Module currentModule;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
 
     public SuggestionIndexerProjectServiceImpl(@NotNull final Project project) {
         this.project = project;
+        this.alarm = new Alarm(SWING_THREAD, this);
     }
 
     @Override
@@ -28,7 +70,190 @@ public class SuggestionIndexerProjectServiceImpl implements SuggestionIndexerPro
     @Override
     public void index(final Module[] modules) {
         LogUtil.debug(() -> log.debug("-> Indexing requested for a subset of modules of project " + this.project.getName()));
-        Stream.of(modules).forEach(module -> module.getService(SuggestionService.class).index());
+        this.requestCount.addAndGet(modules.length);
+        synchronized (this.pendingModules) {
+            Collections.addAll(this.pendingModules, modules);
+        }
+        this.scheduleDrain();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (this.pendingModules) {
+            return this.pendingModules.size();
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    @Override
+    public long getRunCount() {
+        return this.runCount.get();
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this.pendingModules) {
+            this.pendingModules.clear();
+        }
+
+        final ProgressIndicator indicator = this.currentIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+    }
+
+    private void scheduleDrain() {
+        this.scheduleDrain(DEBOUNCE_DELAY_MILLIS);
+    }
+
+    private void scheduleDrain(final int delayMillis) {
+        if (!this.alarm.isDisposed()) {
+            this.alarm.cancelAllRequests();
+            this.alarm.addRequest(this::startDrain, delayMillis);
+        }
+    }
+
+    private void startDrain() {
+        if (this.project.isDisposed() || !this.draining.compareAndSet(false, true)) {
+            // the drain that is already running picks up whatever got queued in the meantime
+            return;
+        }
+
+        new Task.Backgroundable(this.project, "Indexing spring configuration metadata", true) {
+            private boolean cancelled;
+
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                SuggestionIndexerProjectServiceImpl.this.drain(indicator);
+            }
+
+            @Override
+            public void onCancel() {
+                LogUtil.debug(() -> log.debug("Indexing cancelled, postponing pending requests for project " + SuggestionIndexerProjectServiceImpl.this.project.getName()));
+                this.cancelled = true;
+                SuggestionIndexerProjectServiceImpl.this.requeueInterruptedModule();
+            }
+
+            @Override
+            public void onFinished() {
+                SuggestionIndexerProjectServiceImpl.this.currentIndicator = null;
+                SuggestionIndexerProjectServiceImpl.this.currentModule = null;
+                SuggestionIndexerProjectServiceImpl.this.draining.set(false);
+                // a request that came in after the last poll, but before the flag got reset would be stuck otherwise
+                if (SuggestionIndexerProjectServiceImpl.this.getQueueDepth() != 0) {
+                    SuggestionIndexerProjectServiceImpl.this.scheduleDrain(this.cancelled ? RESUME_AFTER_CANCEL_DELAY_MILLIS : DEBOUNCE_DELAY_MILLIS);
+                }
+            }
+        }.queue();
+    }
+
+    private void drain(final ProgressIndicator indicator) {
+        this.currentIndicator = indicator;
+
+        Module module;
+        while ((module = this.pollNext()) != null) {
+            this.currentModule = module;
+            indicator.checkCanceled();
+            if (module.isDisposed()) {
+                continue;
+            }
+
+            indicator.setText("Indexing spring configuration metadata of module " + module.getName());
+            indicator.setText2(null);
+            indicator.setFraction(0);
+
+            this.runCount.incrementAndGet();
+            try {
+                final SuggestionService suggestionService = SuggestionService.getInstance(module);
+                suggestionService.indexNow(indicator);
+
+                indicator.setText("Preparing spring configuration classes of module " + module.getName());
+                indicator.setText2(null);
+                suggestionService.warmUp(indicator);
+            } catch (final ProcessCanceledException e) {
+                throw e;
+            } catch (final Throwable e) { //NOSONAR
+                log.error("Error occurred while indexing module " + module.getName() + " of project " + this.project.getName(), e);
+            }
+            this.currentModule = null;
+        }
+    }
+
+    /**
+     * A cancelled drain leaves the modules it did not get to queued, so that they do not keep a stale index till something
+     * else requests indexing. The module it got interrupted on goes first, as its index is only partially up to date
+     */
+    private void requeueInterruptedModule() {
+        final Module interruptedModule = this.currentModule;
+        // a drain cancelled by disposing this service must not hold on to the modules
+        if (interruptedModule == null || interruptedModule.isDisposed() || this.alarm.isDisposed()) {
+            return;
+        }
+
+        synchronized (this.pendingModules) {
+            final Set<Module> remainingModules = new LinkedHashSet<>(this.pendingModules);
+            this.pendingModules.clear();
+            this.pendingModules.add(interruptedModule);
+            this.pendingModules.addAll(remainingModules);
+        }
+    }
+
+    /**
+     * @return next module to index, preferring the ones the user is currently editing config files of
+     */
+    @Nullable
+    private Module pollNext() {
+        final Set<Module> modulesWithOpenConfigFiles = this.findModulesWithOpenConfigFiles();
+        synchronized (this.pendingModules) {
+            Module next = null;
+            for (final Module pendingModule : this.pendingModules) {
+                if (modulesWithOpenConfigFiles.contains(pendingModule)) {
+                    next = pendingModule;
+                    break;
+                }
+            }
+
+            if (next == null && !this.pendingModules.isEmpty()) {
+                next = this.pendingModules.iterator().next();
+            }
+
+            if (next != null) {
+                this.pendingModules.remove(next);
+            }
+            return next;
+        }
+    }
+
+    private Set<Module> findModulesWithOpenConfigFiles() {
+        return ReadAction.compute(() -> {
+            final Set<Module> modules = new THashSet<>();
+            if (this.project.isDisposed()) {
+                return modules;
+            }
+
+            for (final VirtualFile file : FileEditorManager.getInstance(this.project).getOpenFiles()) {
+                if (isSpringConfigFile(file)) {
+                    final Module module = ModuleUtilCore.findModuleForFile(file, this.project);
+                    if (module != null) {
+                        modules.add(module);
+                    }
+                }
+            }
+            return modules;
+        });
+    }
+
+    /**
+     * Mirrors the patterns of the spring config file types registered in `plugin.xml`
+     */
+    private static boolean isSpringConfigFile(final VirtualFile file) {
+        final String name = file.getName();
+        return (name.startsWith("application") || name.startsWith("bootstrap"))
+                && (name.endsWith(".properties") || name.endsWith(".yml") || name.endsWith(".yaml"));
     }
 
 }
@@ -42,4 +42,8 @@ public class JsonUtil {
     public static <T> T fromJson(InputStream inputStream, Class<T> classOfT) throws IOException {
         return OBJECT_MAPPER.readValue(inputStream, classOfT);
     }
+
+    public static String toJson(Object value) throws IOException {
+        return OBJECT_MAPPER.writeValueAsString(value);
+    }
 }
@@ -1,6 +1,5 @@
 package in.oneton.idea.spring.assistant.plugin.misc;
 
-import com.google.common.base.Splitter;
 import com.intellij.application.options.CodeStyle;
 import com.intellij.codeInsight.completion.InsertionContext;
 import com.intellij.openapi.module.Module;
@@ -226,8 +225,7 @@ public class GenericUtil {
     }
 
     public static List<String> getKey(final String elementVal) {
-        final String ancestralStr = elementVal.replaceAll("\\[\\d+]", StringUtils.EMPTY);
-        return Splitter.on(".").splitToList(ancestralStr);
+        return PropertyKeyTokenizer.toSegmentsWithoutIndexes(elementVal);
     }
 
     public static List<String> getAncestralKey(final String elementVal) {
@@ -0,0 +1,47 @@
+package in.oneton.idea.spring.assistant.plugin.misc;
+
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Prefix search over the keys of a map. The trie is only built when the first prefix query comes in & is held softly,
+ * so that it is dropped under memory pressure & rebuilt from the map when needed again.
+ * <p>
+ * Most tries are never queried, as users only ever explore a small part of the available keys. Concurrent first queries
+ * might build the trie more than once, which is harmless as the result is the same
+ *
+ * @param <V> type of values
+ */
+public class LazyTrie<V> {
+
+    private final Map<String, V> source;
+    @Nullable
+    private volatile SoftReference<Trie<String, V>> trieRef;
+
+    /**
+     * @param source map to build the trie from. Must not be modified afterwards
+     */
+    public LazyTrie(final Map<String, V> source) {
+        this.source = source;
+    }
+
+    public SortedMap<String, V> prefixMap(final String prefix) {
+        return this.getTrie().prefixMap(prefix);
+    }
+
+    private Trie<String, V> getTrie() {
+        final SoftReference<Trie<String, V>> ref = this.trieRef;
+        Trie<String, V> trie = ref != null ? ref.get() : null;
+        if (trie == null) {
+            trie = new PatriciaTrie<>(this.source);
+            this.trieRef = new SoftReference<>(trie);
+        }
+        return trie;
+    }
+
+}
@@ -0,0 +1,354 @@
+package in.oneton.idea.spring.assistant.plugin.misc;
+
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits & normalises dot delimited property keys by walking the characters of the key once, without any regex. Segments
+ * are tracked as ranges over the original {@link CharSequence}, so only the strings handed out get built.
+ * <p>
+ * Used on every keystroke & for every indexed key, so the common case (ascii keys, nothing to strip) never copies
+ */
+@UtilityClass
+public class PropertyKeyTokenizer {
+
+    public static final char SEGMENT_DELIMITER = '.';
+
+    private static final char PLACEHOLDER_DEFAULT_DELIMITER = ':';
+    private static final String PLACEHOLDER_PREFIX = "${";
+
+    /**
+     * Receives a segment of a key as the range [start, end) of the key, excluding the delimiters
+     */
+    @FunctionalInterface
+    private interface SegmentConsumer {
+        void accept(CharSequence key, int start, int end);
+    }
+
+    /**
+     * Passes each segment of the trimmed key on to the consumer. Empty segments are passed on as well, i.e `a..b` & `a.`
+     * have three & two segments
+     *
+     * @return number of segments
+     */
+    private static int forEachSegment(final CharSequence key, final SegmentConsumer consumer) {
+        final int end = trimmedEnd(key, 0, key.length());
+        int segmentStart = trimmedStart(key, 0, end);
+        int count = 0;
+        for (int i = segmentStart; i < end; i++) {
+            if (key.charAt(i) == SEGMENT_DELIMITER) {
+                consumer.accept(key, segmentStart, i);
+                segmentStart = i + 1;
+                count++;
+            }
+        }
+        consumer.accept(key, segmentStart, end);
+        return count + 1;
+    }
+
+    private static int countSegments(final CharSequence key) {
+        final int end = trimmedEnd(key, 0, key.length());
+        int count = 1;
+        for (int i = trimmedStart(key, 0, end); i < end; i++) {
+            if (key.charAt(i) == SEGMENT_DELIMITER) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return segments of the key, each of them {@link #sanitise(CharSequence, int, int) sanitised}
+     */
+    public static String[] toSanitisedSegments(final CharSequence key) {
+        final String[] segments = new String[countSegments(key)];
+        forEachSegment(key, new SegmentConsumer() {
+            private int index;
+
+            @Override
+            public void accept(final CharSequence source, final int start, final int end) {
+                segments[this.index++] = sanitise(source, start, end);
+            }
+        });
+        return segments;
+    }
+
+    /**
+     * @return segments of the key, trimmed but otherwise as is
+     */
+    public static String[] toRawSegments(final CharSequence key) {
+        final String[] segments = new String[countSegments(key)];
+        forEachSegment(key, new SegmentConsumer() {
+            private int index;
+
+            @Override
+            public void accept(final CharSequence source, final int start, final int end) {
+                final int trimmedEnd = trimmedEnd(source, start, end);
+                segments[this.index++] = substring(source, trimmedStart(source, start, trimmedEnd), trimmedEnd);
+            }
+        });
+        return segments;
+    }
+
+    public static String sanitise(final CharSequence value) {
+        return sanitise(value, 0, value.length());
+    }
+
+    /**
+     * Trims the range, strips `-` & `_` & lower cases it, so that `spring.data-source`, `spring.data_source` &
+     * `spring.dataSource` all end up as `spring.datasource`
+     *
+     * @return sanitised form of the range. If the range already is a sanitised string as a whole, the string itself
+     */
+    public static String sanitise(final CharSequence value, final int start, final int end) {
+        final int trimmedEnd = trimmedEnd(value, start, end);
+        final int trimmedStart = trimmedStart(value, start, trimmedEnd);
+
+        int firstChange = -1;
+        for (int i = trimmedStart; i < trimmedEnd; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                // leave locale specific case mapping to the jdk
+                return substring(value, trimmedStart, trimmedEnd).replace("_", StringUtils.EMPTY)
+                        .replace("-", StringUtils.EMPTY).toLowerCase(Locale.getDefault());
+            }
+            if (firstChange == -1 && needsChange(c)) {
+                firstChange = i;
+            }
+        }
+
+        if (firstChange == -1) {
+            return substring(value, trimmedStart, trimmedEnd);
+        }
+
+        final StringBuilder builder = new StringBuilder(trimmedEnd - trimmedStart);
+        builder.append(value, trimmedStart, firstChange);
+        for (int i = firstChange; i < trimmedEnd; i++) {
+            final char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                builder.append((char) (c + ('a' - 'A')));
+            } else if (c != '_' && c != '-') {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits the key on `.`, dropping array indexes along the way, i.e `a.b[0].c[12]` results in [a, b, c]. Segments are
+     * not trimmed
+     */
+    public static List<String> toSegmentsWithoutIndexes(final String key) {
+        final List<String> segments = new ArrayList<>();
+        StringBuilder segmentWithIndexes = null;
+        int segmentStart = 0;
+        int copiedTill = 0;
+        int i = 0;
+        while (i < key.length()) {
+            final char c = key.charAt(i);
+            if (c == SEGMENT_DELIMITER) {
+                segments.add(finishSegment(key, segmentWithIndexes, segmentStart, copiedTill, i));
+                segmentWithIndexes = null;
+                segmentStart = copiedTill = ++i;
+            } else if (c == '[') {
+                final int indexEnd = indexEnd(key, i);
+                if (indexEnd != -1) {
+                    if (segmentWithIndexes == null) {
+                        segmentWithIndexes = new StringBuilder();
+                    }
+                    segmentWithIndexes.append(key, copiedTill, i);
+                    copiedTill = i = indexEnd;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        segments.add(finishSegment(key, segmentWithIndexes, segmentStart, copiedTill, key.length()));
+        return segments;
+    }
+
+    /**
+     * Canonical form of a key under spring's relaxed binding, i.e the {@link #sanitise(CharSequence) sanitised} segments
+     * joined by `.`, without array indexes. `spring.dataSource.url`, `spring.data-source.url`, `spring.data_source.url` &
+     * `spring.datasource[0].url` all end up as `spring.datasource.url`. `_` is part of a segment, so `SERVER_PORT` ends
+     * up as `serverport`, see {@link #environmentVariableToCanonicalKey(CharSequence)} for environment variables
+     *
+     * @return canonical key. If the key already is canonical, the key itself
+     */
+    public static String toCanonicalKey(final CharSequence key) {
+        return toCanonicalKey(key, false);
+    }
+
+    /**
+     * Canonical form of an environment variable name, whose `_` delimit the segments & whose numeric segments are array
+     * indexes, i.e `SPRING_DATASOURCE_URL` ends up as `spring.datasource.url` & `MY_LIST_0_NAME` as `my.list.name`. Only
+     * meant for text known to be an environment variable, as a key of a config file never uses this syntax
+     *
+     * @return canonical key
+     */
+    public static String environmentVariableToCanonicalKey(final CharSequence name) {
+        return toCanonicalKey(name, true);
+    }
+
+    /**
+     * @param value placeholder of the form `${key}` or `${key:default}`, optionally within double quotes
+     * @return key referred by the placeholder, empty if the value is not a placeholder
+     */
+    public static String placeholderKey(final String value) {
+        int start = 0;
+        int end = value.length();
+        if (start < end && value.charAt(start) == '"') {
+            start++;
+        }
+        if (!value.startsWith(PLACEHOLDER_PREFIX, start)) {
+            return StringUtils.EMPTY;
+        }
+        start += PLACEHOLDER_PREFIX.length();
+
+        if (end - start >= 2 && value.charAt(end - 1) == '"' && value.charAt(end - 2) == '}') {
+            end -= 2;
+        } else if (end > start && value.charAt(end - 1) == '}') {
+            end--;
+        } else {
+            return StringUtils.EMPTY;
+        }
+
+        int keyEnd = end;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (isLineTerminator(c)) {
+                return StringUtils.EMPTY;
+            }
+            if (c == PLACEHOLDER_DEFAULT_DELIMITER && keyEnd == end) {
+                keyEnd = i;
+            }
+        }
+        return value.substring(start, keyEnd);
+    }
+
+    private static String toCanonicalKey(final CharSequence key, final boolean environmentVariable) {
+        final int end = trimmedEnd(key, 0, key.length());
+        final int start = trimmedStart(key, 0, end);
+        final char delimiter = environmentVariable ? '_' : SEGMENT_DELIMITER;
+
+        final StringBuilder builder = new StringBuilder(end - start);
+        boolean first = true;
+        int segmentStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || key.charAt(i) == delimiter) {
+                first &= !appendCanonicalSegment(builder, key, segmentStart, i, environmentVariable, first);
+                segmentStart = i + 1;
+            }
+        }
+        return key instanceof String && ((String) key).contentEquals(builder) ? (String) key : builder.toString();
+    }
+
+    /**
+     * @return whether the segment was appended. Numeric segments of environment variables are array indexes & are skipped
+     */
+    private static boolean appendCanonicalSegment(final StringBuilder builder, final CharSequence key, final int start,
+                                                  final int end, final boolean environmentVariable, final boolean first) {
+        final int trimmedEnd = trimmedEnd(key, start, end);
+        final int trimmedStart = trimmedStart(key, start, trimmedEnd);
+        if (environmentVariable && isBlankOrNumeric(key, trimmedStart, trimmedEnd)) {
+            return false;
+        }
+
+        if (!first) {
+            builder.append(SEGMENT_DELIMITER);
+        }
+        final int segmentStart = builder.length();
+        boolean asciiOnly = true;
+        for (int i = trimmedStart; i < trimmedEnd; i++) {
+            final char c = key.charAt(i);
+            if (c == '[' && !environmentVariable) {
+                final int indexEnd = indexEnd(key, i);
+                if (indexEnd != -1) {
+                    i = indexEnd - 1;
+                    continue;
+                }
+            }
+            if (c == '_' || c == '-') {
+                continue;
+            }
+            asciiOnly &= c < 0x80;
+            builder.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+
+        if (!asciiOnly) {
+            // leave locale specific case mapping to the jdk, same as sanitise
+            final String segment = builder.substring(segmentStart).toLowerCase(Locale.getDefault());
+            builder.setLength(segmentStart);
+            builder.append(segment);
+        }
+        return true;
+    }
+
+    private static boolean isBlankOrNumeric(final CharSequence key, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String finishSegment(final String key, final StringBuilder segmentWithIndexes, final int segmentStart,
+                                        final int copiedTill, final int end) {
+        if (segmentWithIndexes == null) {
+            return key.substring(segmentStart, end);
+        }
+        return segmentWithIndexes.append(key, copiedTill, end).toString();
+    }
+
+    /**
+     * @return position right after the `]` of an array index starting at {@code start}, -1 if there is none
+     */
+    private static int indexEnd(final CharSequence key, final int start) {
+        int i = start + 1;
+        while (i < key.length() && key.charAt(i) >= '0' && key.charAt(i) <= '9') {
+            i++;
+        }
+        return i > start + 1 && i < key.length() && key.charAt(i) == ']' ? i + 1 : -1;
+    }
+
+    private static boolean needsChange(final char c) {
+        return c == '_' || c == '-' || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static int trimmedStart(final CharSequence value, final int start, final int end) {
+        int i = start;
+        while (i < end && value.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimmedEnd(final CharSequence value, final int start, final int end) {
+        int i = end;
+        while (i > start && value.charAt(i - 1) <= ' ') {
+            i--;
+        }
+        return i;
+    }
+
+    private static String substring(final CharSequence value, final int start, final int end) {
+        if (value instanceof String) {
+            // String#substring hands out the string itself for the full range
+            return ((String) value).substring(start, end);
+        }
+        return value.subSequence(start, end).toString();
+    }
+
+}
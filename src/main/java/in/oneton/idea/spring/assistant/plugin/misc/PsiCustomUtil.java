@@ -26,7 +26,6 @@ import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.PropertyUtil;
 import com.intellij.util.IncorrectOperationException;
-import com.intellij.util.TimeoutUtil;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TObjectHashingStrategy;
@@ -40,6 +39,7 @@ import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.intellij.openapi.module.ModuleUtilCore.findModuleForFile;
 import static com.intellij.openapi.module.ModuleUtilCore.findModuleForPsiElement;
@@ -96,6 +96,12 @@ public class PsiCustomUtil {
             create("spring_assistant_plugin_firstParameterType");
     private static final Key<CachedValue<PsiType>> SPRING_ASSISTANT_PLUGIN_RETURN_TYPE_KEY =
             create("spring_assistant_plugin_returnType");
+    /**
+     * Canonical text of the parameterised types of a class -> whether they are valid. Only valid types are recorded, so
+     * that a type that is invalid right now (for e.g while indexes are being updated) is checked again next time
+     */
+    private static final Key<CachedValue<Map<String, Boolean>>> SPRING_ASSISTANT_PLUGIN_VALID_TYPES_KEY =
+            create("spring_assistant_plugin_validTypes");
 
     @Nullable
     public static PsiType safeGetValidType(@NotNull Module module, @NotNull String fqn) {
@@ -374,10 +380,7 @@ public class PsiCustomUtil {
     // Copied & modified from PsiUtil.ensureValidType
     public static boolean isValidType(@NotNull PsiType type) {
         if (!type.isValid()) {
-            TimeoutUtil.sleep(1); // to see if processing in another thread suddenly makes the type valid again (which is a bug)
-            if (!type.isValid()) {
-                return false;
-            }
+            return false;
         }
 
         if (type instanceof PsiArrayType) {
@@ -394,8 +397,25 @@ public class PsiCustomUtil {
         } else if (type instanceof PsiClassType) {
             final var psiClassType = (PsiClassType) type;
             try {
-                var classResolveResult = psiClassType.resolveGenerics();
-                return classResolveResult.isValidResult() && isValidElement(requireNonNull(classResolveResult.getElement())) && !hasUnresolvedComponents(type);
+                final PsiClass psiClass = psiClassType.resolve();
+                if (psiClass == null || !isValidElement(psiClass)) {
+                    return false;
+                }
+
+                // the same (nested) types are checked over & over while completing, lets remember the ones that are valid till PSI changes
+                final Map<String, Boolean> validTypes = getCachedValue(psiClass, SPRING_ASSISTANT_PLUGIN_VALID_TYPES_KEY,
+                        () -> create(new ConcurrentHashMap<>(), MODIFICATION_COUNT));
+                final String canonicalText = psiClassType.getCanonicalText();
+                if (validTypes.containsKey(canonicalText)) {
+                    return true;
+                }
+
+                final var classResolveResult = psiClassType.resolveGenerics();
+                final boolean valid = classResolveResult.isValidResult() && !hasUnresolvedComponents(type);
+                if (valid) {
+                    validTypes.put(canonicalText, Boolean.TRUE);
+                }
+                return valid;
             } catch (final com.intellij.openapi.project.IndexNotReadyException exception) {
                 return false;
             }
@@ -411,12 +431,7 @@ public class PsiCustomUtil {
      */
     // Copied & modified from PsiUtilCore.ensureValid
     private static boolean isValidElement(@NotNull PsiElement element) {
-        if (!element.isValid()) {
-            TimeoutUtil.sleep(
-                    1); // to see if processing in another thread suddenly makes the element valid again (which is a bug)
-            return element.isValid();
-        }
-        return true;
+        return element.isValid();
     }
 
     @Nullable
@@ -451,7 +466,16 @@ public class PsiCustomUtil {
     private static Map<String, GenericClassMemberWrapper> prepareWritableProperties(
             @NotNull PsiClass psiClass) {
         final Map<String, GenericClassMemberWrapper> memberNameToMemberWrapper = new THashMap<>();
-        for (PsiMethod method : psiClass.getAllMethods()) {
+        final PsiMethod[] allMethods = psiClass.getAllMethods();
+        // lets index the setters in the same pass, instead of looking up the setter of each getter across the hierarchy
+        final Map<String, PsiMethod> nameToSetter = new THashMap<>();
+        for (PsiMethod method : allMethods) {
+            if (method.hasModifierProperty(PUBLIC) && !method.hasModifierProperty(STATIC) && isSimplePropertySetter(method)) {
+                nameToSetter.putIfAbsent(method.getName(), method);
+            }
+        }
+
+        for (PsiMethod method : allMethods) {
             if (method.hasModifierProperty(STATIC) || !method.hasModifierProperty(PUBLIC)) {
                 continue;
             }
@@ -460,7 +484,7 @@ public class PsiCustomUtil {
                 final String propertyName = getPropertyName(method);
                 assert propertyName != null;
 
-                PsiMethod setter = findInstancePropertySetter(psiClass, propertyName);
+                PsiMethod setter = nameToSetter.get(PropertyUtil.suggestSetterName(propertyName));
                 if (setter != null) {
                     final PsiType setterArgType = setter.getParameterList().getParameters()[0].getType();
                     final PsiField field = psiClass.findFieldByName(propertyName, true);
@@ -11,16 +11,19 @@ import com.intellij.openapi.module.Module;
 import in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassMetadata;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecationLevel;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import lombok.Value;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import javax.swing.*;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static com.intellij.openapi.util.text.StringUtil.shortenTextWithEllipsis;
 import static com.intellij.ui.JBColor.RED;
@@ -62,15 +65,13 @@ public class Suggestion implements Comparable<Suggestion> {
                 presentation.setItemTextBold(true);
             }
 
-            final String shortDescription;
-            if (suggestion.defaultValue != null) {
-                shortDescription = shortenTextWithEllipsis(suggestion.defaultValue, 60, 0, true);
+            if (suggestion.getDefaultValue() != null) {
                 final TextAttributes attrs = EditorColorsManager.getInstance().getGlobalScheme().getAttributes(SCALAR_TEXT);
-                presentation.setTailText(Constants.EQUALS_SIGN + shortDescription, attrs.getForegroundColor());
+                presentation.setTailText(suggestion.getDefaultValueTailText(), attrs.getForegroundColor());
             }
 
-            if (suggestion.description != null) {
-                presentation.appendTailText(" (" + getFirstSentenceWithoutDot(suggestion.description) + ")", true);
+            if (suggestion.getDescription() != null) {
+                presentation.appendTailText(suggestion.getDescriptionTailText(), true);
             }
 
             if (suggestion.shortType != null) {
@@ -84,13 +85,22 @@ public class Suggestion implements Comparable<Suggestion> {
     private final String suggestionToDisplay;
 
     @Nullable
-    private final String description;
+    private String description;
 
     @Nullable
     private final String shortType;
 
     @Nullable
-    private final String defaultValue;
+    private String defaultValue;
+    /**
+     * Source of the description & default value, when these are not known upfront (for e.g properties whose details are
+     * kept encoded in the payload of their container). Only resolved once the suggestion gets rendered/documented, as
+     * most suggestions of a completion never are
+     */
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private volatile Supplier<Details> deferredDetails;
 
     @Nullable
     private final SpringConfigurationMetadataDeprecationLevel deprecationLevel;
@@ -126,10 +136,23 @@ public class Suggestion implements Comparable<Suggestion> {
     private final Icon icon;
 
     private final String pathDotDelimitedRootToLeaf;
+    /**
+     * Tail texts are computed on first render, as only the visible suggestions are ever rendered & key suggestions are
+     * reused across completions (see {@code MetadataSuggestionNode#cachedKeySuggestion})
+     */
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private String defaultValueTailText;
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private String descriptionTailText;
 
     @Builder
     public Suggestion(@NotNull final String suggestionToDisplay, @Nullable final String description,
                       @Nullable final String shortType, @Nullable final String defaultValue,
+                      @Nullable final Supplier<Details> deferredDetails,
                       @Nullable final SpringConfigurationMetadataDeprecationLevel deprecationLevel,
                       @NotNull final List<? extends SuggestionNode> matchesTopFirst, final int numOfAncestors, final boolean forValue,
                       final boolean representingDefaultValue, @NotNull final FileType fileType, @Nullable final Icon icon) {
@@ -137,6 +160,7 @@ public class Suggestion implements Comparable<Suggestion> {
         this.description = description;
         this.shortType = shortType;
         this.defaultValue = defaultValue;
+        this.deferredDetails = deferredDetails;
         this.deprecationLevel = deprecationLevel;
         this.matchesTopFirst = matchesTopFirst;
         this.numOfAncestors = numOfAncestors;
@@ -151,8 +175,8 @@ public class Suggestion implements Comparable<Suggestion> {
     public LookupElementBuilder newLookupElement() {
         LookupElementBuilder builder = LookupElementBuilder.create(this, this.suggestionToDisplay);
         if (this.forValue) {
-            if (this.description != null) {
-                builder = builder.withTypeText(this.description, true);
+            if (this.getDescription() != null) {
+                builder = builder.withTypeText(this.getDescription(), true);
             }
             if (this.representingDefaultValue) {
                 builder = builder.bold();
@@ -165,6 +189,47 @@ public class Suggestion implements Comparable<Suggestion> {
         return builder;
     }
 
+    @Nullable
+    public String getDescription() {
+        this.resolveDeferredDetails();
+        return this.description;
+    }
+
+    @Nullable
+    public String getDefaultValue() {
+        this.resolveDeferredDetails();
+        return this.defaultValue;
+    }
+
+    private void resolveDeferredDetails() {
+        final Supplier<Details> detailsSupplier = this.deferredDetails;
+        if (detailsSupplier != null) {
+            // resolving is idempotent, so a concurrent render resolving it again is harmless
+            final Details details = detailsSupplier.get();
+            this.description = details.getDescription();
+            this.defaultValue = details.getDefaultValue();
+            this.deferredDetails = null;
+        }
+    }
+
+    private String getDefaultValueTailText() {
+        if (this.defaultValueTailText == null) {
+            final String defaultValue = this.getDefaultValue();
+            assert defaultValue != null;
+            this.defaultValueTailText = Constants.EQUALS_SIGN + shortenTextWithEllipsis(defaultValue, 60, 0, true);
+        }
+        return this.defaultValueTailText;
+    }
+
+    private String getDescriptionTailText() {
+        if (this.descriptionTailText == null) {
+            final String description = this.getDescription();
+            assert description != null;
+            this.descriptionTailText = " (" + getFirstSentenceWithoutDot(description) + ")";
+        }
+        return this.descriptionTailText;
+    }
+
     public String getFullPath() {
         return dotDelimitedOriginalNames(this.matchesTopFirst);
     }
@@ -196,4 +261,15 @@ public class Suggestion implements Comparable<Suggestion> {
         }
     }
 
+    /**
+     * Description & default value of a suggestion whose details are deferred
+     */
+    @Value
+    public static class Details {
+        @Nullable
+        String description;
+        @Nullable
+        String defaultValue;
+    }
+
 }
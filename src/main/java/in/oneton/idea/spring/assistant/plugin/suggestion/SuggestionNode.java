@@ -1,5 +1,6 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion;
 
+import in.oneton.idea.spring.assistant.plugin.misc.PropertyKeyTokenizer;
 import com.intellij.openapi.module.Module;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.DocumentationProvider;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
@@ -14,7 +15,7 @@ public interface SuggestionNode
         extends OriginalNameProvider, DocumentationProvider, SuggestionNodeTypeProvider {
 
     static String sanitise(String name) {
-        return name.trim().replaceAll("_", "").replace("-", "").toLowerCase();
+        return PropertyKeyTokenizer.sanitise(name);
     }
 
     /**
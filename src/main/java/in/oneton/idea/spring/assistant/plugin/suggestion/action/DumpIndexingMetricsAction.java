@@ -0,0 +1,102 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.action;
+
+import com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service.SuggestionIndexerProjectService;
+import com.intellij.ide.scratch.ScratchRootType;
+import com.intellij.lang.Language;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import in.oneton.idea.spring.assistant.plugin.initializr.misc.JsonUtil;
+import in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassMetadataCache;
+import in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassMetadataCacheMetrics;
+import in.oneton.idea.spring.assistant.plugin.suggestion.service.MetadataContainerCache;
+import in.oneton.idea.spring.assistant.plugin.suggestion.service.ModuleIndexingMetrics;
+import in.oneton.idea.spring.assistant.plugin.suggestion.service.SuggestionService;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Comparator.comparing;
+
+/**
+ * Internal action that dumps the indexing metrics of all modules of the project as json into a scratch file. Handy to
+ * find the containers that dominate index time & memory
+ */
+public class DumpIndexingMetricsAction extends AnAction implements DumbAware {
+
+    private static final Logger log = Logger.getInstance(DumpIndexingMetricsAction.class);
+
+    @Override
+    public void update(@NotNull final AnActionEvent e) {
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        final Project project = e.getProject();
+        if (project == null) {
+            return;
+        }
+
+        new Task.Backgroundable(project, "Collecting spring configuration metadata indexing metrics", false) {
+            private String json;
+
+            @Override
+            public void run(@NotNull final ProgressIndicator indicator) {
+                try {
+                    this.json = JsonUtil.getOBJECT_MAPPER().writerWithDefaultPrettyPrinter().writeValueAsString(collectMetrics(project));
+                } catch (final IOException ex) {
+                    log.error("Unable to serialise indexing metrics of project " + project.getName(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (this.json != null && !project.isDisposed()) {
+                    final VirtualFile scratchFile = ScratchRootType.getInstance()
+                            .createScratchFile(project, "spring-assistant-indexing-metrics.json", Language.ANY, this.json);
+                    if (scratchFile != null) {
+                        FileEditorManager.getInstance(project).openFile(scratchFile, true);
+                    }
+                }
+            }
+        }.queue();
+    }
+
+    private static Map<String, Object> collectMetrics(final Project project) {
+        final List<ModuleIndexingMetrics> modules = new ArrayList<>();
+        final List<ClassMetadataCacheMetrics> classMetadataCaches = new ArrayList<>();
+        for (final Module module : ModuleManager.getInstance(project).getModules()) {
+            if (!module.isDisposed()) {
+                modules.add(SuggestionService.getInstance(module).getIndexingMetrics());
+                classMetadataCaches.add(ClassMetadataCache.getInstance(module).getMetrics());
+            }
+        }
+        modules.sort(comparing(ModuleIndexingMetrics::getEstimatedRetainedBytes).reversed());
+
+        final SuggestionIndexerProjectService indexer = SuggestionIndexerProjectService.getInstance(project);
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("project", project.getName());
+        metrics.put("queueDepth", indexer.getQueueDepth());
+        metrics.put("requestCount", indexer.getRequestCount());
+        metrics.put("runCount", indexer.getRunCount());
+        metrics.put("sharedContainers", MetadataContainerCache.getInstance().size());
+        metrics.put("estimatedRetainedBytes", modules.stream().mapToLong(ModuleIndexingMetrics::getEstimatedRetainedBytes).sum());
+        metrics.put("modules", modules);
+        metrics.put("classMetadataCaches", classMetadataCaches);
+        return metrics;
+    }
+
+}
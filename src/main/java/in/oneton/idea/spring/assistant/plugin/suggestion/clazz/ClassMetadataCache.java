@@ -0,0 +1,30 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.clazz;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiClassType;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Module wide cache of the metadata built for classes referred to by the configuration properties of the module.
+ * <p>
+ * The same (nested) configuration classes are resolved over & over while the user navigates/completes the keys below
+ * them, so their metadata is kept here till any of the classes it was built from changes. Only the most recently used
+ * classes are kept, see `plugin.xml` for the bound
+ */
+public interface ClassMetadataCache {
+
+    static ClassMetadataCache getInstance(@NotNull final Module module) {
+        return module.getService(ClassMetadataCache.class);
+    }
+
+    /**
+     * @return metadata of the type, null if the type (or any of the types it is built from) can not be resolved
+     */
+    @Nullable
+    ClassMetadata get(PsiClassType type);
+
+    ClassMetadataCacheMetrics getMetrics();
+
+}
@@ -0,0 +1,135 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.clazz;
+
+import com.github.eltonsandre.plugin.idea.spring.assistant.common.LogUtil;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiFile;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.computeDependencies;
+import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.typeToFqn;
+import static in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassSuggestionNodeFactory.newClassMetadata;
+
+public class ClassMetadataCacheImpl implements ClassMetadataCache {
+
+    private static final Logger log = Logger.getInstance(ClassMetadataCacheImpl.class);
+
+    /**
+     * Upper bound for the number of classes cached per module, see `plugin.xml`
+     */
+    static final String MAX_SIZE_REGISTRY_KEY = "spring.assistant.class.metadata.cache.size";
+
+    private final Module module;
+    /**
+     * Canonical text of the type (including its type arguments) -> metadata, least recently used first. Guarded by itself
+     */
+    private final LinkedHashMap<String, CachedClassMetadata> fqnToMetadata = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    ClassMetadataCacheImpl(final Module module) {
+        this.module = module;
+    }
+
+    @Nullable
+    @Override
+    public ClassMetadata get(final PsiClassType type) {
+        final String fqn = typeToFqn(this.module, type);
+        if (fqn == null) {
+            return null;
+        }
+
+        synchronized (this.fqnToMetadata) {
+            final CachedClassMetadata cached = this.fqnToMetadata.get(fqn);
+            if (cached != null) {
+                if (cached.isUpToDate()) {
+                    this.hits++;
+                    return cached.metadata;
+                }
+                this.fqnToMetadata.remove(fqn);
+                this.invalidations++;
+            }
+            this.misses++;
+        }
+
+        // built outside of the lock, concurrent misses for the same type at worst build the metadata twice
+        LogUtil.debug(() -> log.debug("Creating metadata instance for " + fqn));
+        final Set<PsiClass> dependencies = computeDependencies(this.module, type);
+        if (dependencies == null) {
+            return null;
+        }
+        final CachedClassMetadata built = new CachedClassMetadata(newClassMetadata(type), dependencies);
+
+        final int maxSize = Registry.intValue(MAX_SIZE_REGISTRY_KEY);
+        synchronized (this.fqnToMetadata) {
+            this.fqnToMetadata.put(fqn, built);
+            while (this.fqnToMetadata.size() > maxSize) {
+                final Map.Entry<String, CachedClassMetadata> eldest = this.fqnToMetadata.entrySet().iterator().next();
+                this.fqnToMetadata.remove(eldest.getKey());
+                this.evictions++;
+            }
+        }
+        return built.metadata;
+    }
+
+    @Override
+    public ClassMetadataCacheMetrics getMetrics() {
+        synchronized (this.fqnToMetadata) {
+            return ClassMetadataCacheMetrics.builder()
+                    .moduleName(this.module.getName())
+                    .size(this.fqnToMetadata.size())
+                    .maxSize(Registry.intValue(MAX_SIZE_REGISTRY_KEY))
+                    .hits(this.hits)
+                    .misses(this.misses)
+                    .invalidations(this.invalidations)
+                    .evictions(this.evictions)
+                    .build();
+        }
+    }
+
+    /**
+     * Metadata along with the classes it was built from, as of when it was built
+     */
+    private static final class CachedClassMetadata {
+        private final ClassMetadata metadata;
+        private final PsiClass[] dependencies;
+        private final long[] dependencyModificationStamps;
+
+        private CachedClassMetadata(final ClassMetadata metadata, final Set<PsiClass> dependencies) {
+            this.metadata = metadata;
+            this.dependencies = dependencies.toArray(new PsiClass[0]);
+            this.dependencyModificationStamps = new long[this.dependencies.length];
+            for (int i = 0; i < this.dependencies.length; i++) {
+                this.dependencyModificationStamps[i] = modificationStamp(this.dependencies[i]);
+            }
+        }
+
+        /**
+         * Same as a {@link com.intellij.psi.util.CachedValue} depending on the classes, the metadata is stale once any of
+         * the files declaring them changes
+         */
+        boolean isUpToDate() {
+            for (int i = 0; i < this.dependencies.length; i++) {
+                if (!this.dependencies[i].isValid() || modificationStamp(this.dependencies[i]) != this.dependencyModificationStamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long modificationStamp(final PsiClass psiClass) {
+            final PsiFile file = psiClass.getContainingFile();
+            return file != null ? file.getModificationStamp() : -1;
+        }
+    }
+
+}
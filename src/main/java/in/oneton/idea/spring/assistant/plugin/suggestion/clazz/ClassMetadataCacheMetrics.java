@@ -0,0 +1,27 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.clazz;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Usage statistics of the {@link ClassMetadataCache} of a module, since the module got loaded
+ */
+@Value
+@Builder
+public class ClassMetadataCacheMetrics {
+
+    String moduleName;
+    int size;
+    int maxSize;
+    long hits;
+    long misses;
+    /**
+     * Entries dropped as one of the classes they were built from changed
+     */
+    long invalidations;
+    /**
+     * Entries dropped to stay within {@link #maxSize}
+     */
+    long evictions;
+
+}
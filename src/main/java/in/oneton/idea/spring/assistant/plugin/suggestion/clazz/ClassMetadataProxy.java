@@ -1,13 +1,8 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.clazz;
 
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.util.Key;
-import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiClassType;
 import com.intellij.psi.PsiType;
-import com.intellij.psi.util.CachedValue;
-import com.intellij.util.ConcurrencyUtil;
 import in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion;
 import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode;
 import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNodeType;
@@ -20,33 +15,19 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
-import static com.intellij.psi.util.CachedValueProvider.Result.create;
-import static com.intellij.psi.util.CachedValuesManager.getCachedValue;
-import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.computeDependencies;
 import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.toValidPsiClass;
-import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.typeToFqn;
 import static in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNodeType.UNKNOWN_CLASS;
-import static in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassSuggestionNodeFactory.newClassMetadata;
 import static java.util.Objects.requireNonNull;
 
 public class ClassMetadataProxy implements MetadataProxy {
 
-    private static final Logger log = Logger.getInstance(ClassMetadataProxy.class);
-
-    private static final ConcurrentMap<String, Key<CachedValue<ClassMetadata>>> fqnToKey = new ConcurrentHashMap<>();
-
-    @NotNull
-    private final PsiClass targetClass;
-
     @NotNull
     private final PsiClassType type;
 
     ClassMetadataProxy(@NotNull PsiClassType type) {
         this.type = type;
-        targetClass = requireNonNull(toValidPsiClass(type));
+        requireNonNull(toValidPsiClass(type));
     }
 
     @Nullable
@@ -163,27 +144,9 @@ public class ClassMetadataProxy implements MetadataProxy {
         return defaultReturnValue;
     }
 
+    @Nullable
     private ClassMetadata getTarget(Module module) {
-        final String fqn = typeToFqn(module, type);
-
-        if (fqn == null) {
-            return null;
-        }
-
-        final String userDataKeyRef = "spring_assistant_plugin_class_metadata:" + fqn;
-        Key<CachedValue<ClassMetadata>> classMetadataKey =
-                ConcurrencyUtil.cacheOrGet(fqnToKey, userDataKeyRef, Key.create(userDataKeyRef));
-
-        return getCachedValue(targetClass, classMetadataKey, () -> {
-            log.debug("Creating metadata instance for " + userDataKeyRef);
-            final Set<PsiClass> dependencies = computeDependencies(module, type);
-
-            if (dependencies != null) {
-                return create(newClassMetadata(type), dependencies);
-            }
-            return null;
-        });
-
+        return ClassMetadataCache.getInstance(module).get(type);
     }
 
 
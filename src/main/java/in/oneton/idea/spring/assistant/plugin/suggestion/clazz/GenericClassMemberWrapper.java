@@ -37,10 +37,15 @@ public class GenericClassMemberWrapper implements SuggestionNode, SuggestionDocu
 
     @NotNull
     private final String originalName;
+    /**
+     * Documentation & short type are only computed once the member is actually suggested, as all members of a class are
+     * wrapped as soon as the class is expanded. See {@link #computeDetails()}
+     */
     @Nullable
-    private final String documentation;
+    private volatile String documentation;
     @Nullable
-    private final String shortType;
+    private volatile String shortType;
+    private volatile boolean detailsComputed;
     private final boolean deprecated;
 
     private MetadataProxy proxy;
@@ -48,11 +53,20 @@ public class GenericClassMemberWrapper implements SuggestionNode, SuggestionDocu
     public GenericClassMemberWrapper(@NotNull PsiMember member) {
         this.member = member;
         this.originalName = requireNonNull(member.getName());
-        this.documentation = computeDocumentation(member);
-        this.shortType = toClassNonQualifiedName(getReferredPsiType(member));
         this.deprecated = this.computeDeprecationStatus();
     }
 
+    /**
+     * Concurrent first calls might compute the details more than once, which is harmless as the result is the same
+     */
+    private void computeDetails() {
+        if (!this.detailsComputed) {
+            this.documentation = computeDocumentation(this.member);
+            this.shortType = toClassNonQualifiedName(getReferredPsiType(this.member));
+            this.detailsComputed = true;
+        }
+    }
+
     public MetadataProxy getMemberReferredClassMetadataProxy(Module module) {
         if (this.proxy == null) {
             this.proxy = newMetadataProxy(module, getReferredPsiType(this.member));
@@ -164,6 +178,7 @@ public class GenericClassMemberWrapper implements SuggestionNode, SuggestionDocu
     public Suggestion buildSuggestionForKey(Module module, FileType fileType, List<SuggestionNode> matchesRootTillMe, int numOfAncestors) {
         final Icon icon = this.doWithMemberReferredClassProxy(module,
                 proxy -> proxy.getSuggestionNodeType(module), SuggestionNodeType.UNKNOWN_CLASS).getIcon();
+        this.computeDetails();
 
         Suggestion.SuggestionBuilder builder = Suggestion.builder()
                 .suggestionToDisplay(this.originalName)
@@ -8,8 +8,7 @@ import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode;
 import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNodeType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.SuggestionDocumentationHelper;
-import org.apache.commons.collections4.Trie;
-import org.apache.commons.collections4.trie.PatriciaTrie;
+import in.oneton.idea.spring.assistant.plugin.misc.LazyTrie;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
@@ -38,8 +37,11 @@ public class GenericClassMetadata extends ClassMetadata {
 
     @Nullable
     private Map<String, GenericClassMemberWrapper> childLookup;
+    /**
+     * Only built once the class is prefix searched, see {@link LazyTrie}
+     */
     @Nullable
-    private Trie<String, GenericClassMemberWrapper> childrenTrie;
+    private LazyTrie<GenericClassMemberWrapper> childrenTrie;
 
     GenericClassMetadata(@NotNull PsiClassType type) {
         this.type = type;
@@ -53,10 +55,7 @@ public class GenericClassMetadata extends ClassMetadata {
     private void init(@NotNull PsiClassType type) {
         if (isValidType(type)) {
             childLookup = getSanitisedPropertyToPsiMemberWrapper(toValidPsiClass(type));
-            if (childLookup != null) {
-                childrenTrie = new PatriciaTrie<>();
-                childLookup.forEach((k, v) -> childrenTrie.put(k, v));
-            }
+            childrenTrie = childLookup != null ? new LazyTrie<>(childLookup) : null;
         } else {
             childLookup = null;
             childrenTrie = null;
@@ -5,7 +5,6 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.completion.CompletionUtilCore;
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.lang.properties.psi.impl.PropertyValueImpl;
 import com.intellij.openapi.module.Module;
 import com.intellij.psi.PsiComment;
@@ -62,12 +61,11 @@ class PropertiesCompletionProvider extends CompletionProvider<CompletionParamete
         final String origin = GenericUtil.truncateIdeaDummyIdentifier(element);
         final String queryWithDotDelimitedPrefixes = this.getQueryWithDotDelimitedPrefixes(origin);
 
-        final List<LookupElement> suggestions = service.findSuggestionsForQueryPrefix(FileType.PROPERTIES, element,
-                ancestralKeys, queryWithDotDelimitedPrefixes, null);
-
         resultSet = resultSet.withPrefixMatcher(queryWithDotDelimitedPrefixes);
-        if (suggestions != null) {
-            suggestions.forEach(resultSet::addElement);
+        final boolean truncated = service.findSuggestionsForQueryPrefix(FileType.PROPERTIES, element,
+                completionParameters.getEditor(), ancestralKeys, queryWithDotDelimitedPrefixes, null, resultSet::addElement);
+        if (truncated) {
+            resultSet.restartCompletionOnAnyPrefixChange();
         }
     }
 
@@ -3,7 +3,6 @@ package in.oneton.idea.spring.assistant.plugin.suggestion.completion;
 import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
-import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.util.NlsSafe;
 import com.intellij.psi.PsiComment;
@@ -73,11 +72,12 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
         final String queryWithDotDelimitedPrefixes = truncateIdeaDummyIdentifier(element);
         final Set<String> siblingsToExclude = this.getSiblingsToExclude(elementContext, parent);
 
-        final List<LookupElement> suggestions = service
-                .findSuggestionsForQueryPrefix(FileType.YAML, element, ancestralKeys, queryWithDotDelimitedPrefixes, siblingsToExclude);
-
-        if (suggestions != null) {
-            suggestions.forEach(resultSet::addElement);
+        final boolean truncated = service.findSuggestionsForQueryPrefix(FileType.YAML, element,
+                completionParameters.getEditor(), ancestralKeys,
+                queryWithDotDelimitedPrefixes, siblingsToExclude, resultSet::addElement);
+        if (truncated) {
+            // as the user types further, the narrower query might surface the suggestions we left out
+            resultSet.restartCompletionOnAnyPrefixChange();
         }
     }
 
@@ -5,10 +5,6 @@ import com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service.Su
 import com.intellij.openapi.compiler.CompilationStatusListener;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.progress.ProgressIndicator;
-import com.intellij.openapi.progress.ProgressManager;
-import com.intellij.openapi.progress.Task;
-import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupActivity;
 import org.jetbrains.annotations.NotNull;
@@ -23,24 +19,8 @@ public class Bootstrap implements StartupActivity.DumbAware {
     public void runActivity(@NotNull final Project project) {
         LogUtil.debug(() -> log.debug("Subscribing to compilation events for project " + project.getName()));
 
-        final var indexTask = new Task.Backgroundable(project, "Indexing spring configuration metadata") {
-            @Override
-            public void run(@NotNull final ProgressIndicator indicator) {
-
-                DumbService.getInstance(project).runReadActionInSmartMode(() -> {
-                    LogUtil.debug(() -> log.debug("Project " + project.getName() + " is opened, indexing will start"));
-
-                    try {
-                        SuggestionIndexerProjectService.getInstance(project).index();
-                    } finally {
-                        LogUtil.debug(() -> log.debug("Indexing complete for project " + project.getName()));
-                    }
-                });
-            }
-        };
-
-        indexTask.setCancelText("Stop Loading").queue();
-        ProgressManager.getInstance().run(indexTask);
+        LogUtil.debug(() -> log.debug("Project " + project.getName() + " is opened, indexing will start"));
+        SuggestionIndexerProjectService.getInstance(project).index();
 
         final var compilationStatusListener = new CompilationStatusListener() {
             @Override
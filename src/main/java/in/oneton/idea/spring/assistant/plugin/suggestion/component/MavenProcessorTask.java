@@ -1,5 +1,6 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.component;
 
+import com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service.SuggestionIndexerProjectService;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.DumbService;
@@ -37,7 +38,7 @@ public class MavenProcessorTask implements MavenProjectsProcessorTask {
                         final var service = SuggestionService.getInstance(this.module);
 
                         if (service.cannotProvideSuggestions()) {
-                            service.index();
+                            SuggestionIndexerProjectService.getInstance(project).index(new Module[]{this.module});
                         } else {
                             debug(() -> log.debug("Index is already built, no point in rebuilding index for project " + project.getName()));
                         }
@@ -0,0 +1,80 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
+
+import in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+
+/**
+ * State of a single key search, shared by every node the search visits. Not thread safe, a context belongs to a single search.
+ * <p>
+ * Holds the number of candidate suggestions the search may still collect, so that the search stops descending into the tree
+ * as soon as enough candidates are found, instead of each subtree being searched in full & cut down afterwards. Candidates
+ * are found in the order the tree is traversed, i.e ordered by path, so the budget is meant to be a few times the number of
+ * suggestions actually handed out. The caller ranks the candidates & keeps the best ones.
+ * <p>
+ * Optionally traces where the last query segment got matched, see {@link LastSegmentMatches}
+ */
+@ToString(of = "remaining")
+public class KeySearchContext {
+
+    private int remaining;
+    @Nullable
+    private LastSegmentMatches lastSegmentMatches;
+
+    /**
+     * @param limit            number of candidate suggestions the search may collect
+     * @param traceLastSegment whether to trace where the last query segment got matched
+     */
+    public KeySearchContext(final int limit, final boolean traceLastSegment) {
+        this.remaining = limit;
+        this.lastSegmentMatches = traceLastSegment ? new LastSegmentMatches() : null;
+    }
+
+    public static KeySearchContext unlimited() {
+        return new KeySearchContext(Integer.MAX_VALUE, false);
+    }
+
+    public boolean isExhausted() {
+        return this.remaining <= 0;
+    }
+
+    /**
+     * @param count number of suggestions just collected. Might be over counted, as a suggestion reachable via more than
+     *              one path is counted once per path
+     */
+    public void consume(final int count) {
+        this.remaining -= count;
+    }
+
+    /**
+     * Records a node the last query segment matched directly
+     *
+     * @param parent      node whose children were matched against the segment, null if the node was looked up in an index
+     * @param name        sanitised name of the matched node
+     * @param suggestions suggestions the search found below the matched node
+     */
+    public void onLastSegmentMatched(@Nullable final Object parent, final String name,
+                                     @Nullable final Collection<Suggestion> suggestions) {
+        if (this.lastSegmentMatches != null) {
+            this.lastSegmentMatches.add(parent, name, suggestions);
+        }
+    }
+
+    /**
+     * Called when the last query segment is matched by something the trace can not follow (for e.g the members of a class)
+     */
+    public void stopTracing() {
+        this.lastSegmentMatches = null;
+    }
+
+    /**
+     * @return where the last query segment got matched, null if not traced or if the trace is incomplete
+     */
+    @Nullable
+    public LastSegmentMatches getLastSegmentMatches() {
+        return this.lastSegmentMatches;
+    }
+
+}
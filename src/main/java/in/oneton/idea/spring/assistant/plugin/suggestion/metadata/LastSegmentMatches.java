@@ -0,0 +1,89 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
+
+import in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Nodes the last segment of a key search matched directly, along with the suggestions found below each of them.
+ * <p>
+ * Searching with a longer last segment visits the same nodes up to the last segment. Wherever the shorter segment matched
+ * some children, the longer one matches a subset of them, unless it matches none, in which case the search falls back to
+ * all children & finds suggestions the shorter segment never led to. So as long as every such parent keeps at least one
+ * match, the results of the longer segment are exactly the suggestions below the nodes that still match, see
+ * {@link #narrow(String)}
+ */
+@ToString(of = "matches")
+public class LastSegmentMatches {
+
+    private final List<Match> matches;
+
+    LastSegmentMatches() {
+        this(new ArrayList<>());
+    }
+
+    private LastSegmentMatches(final List<Match> matches) {
+        this.matches = matches;
+    }
+
+    void add(@Nullable final Object parent, final String name, @Nullable final Collection<Suggestion> suggestions) {
+        this.matches.add(new Match(parent, name, suggestions != null ? new ArrayList<>(suggestions) : Collections.emptyList()));
+    }
+
+    /**
+     * @param longerSegmentPrefix sanitised last segment, starting with the one this was traced for
+     * @return matches of the longer segment, null if a search with it would fall back to the children of a parent whose
+     * children all stopped matching
+     */
+    @Nullable
+    public LastSegmentMatches narrow(final String longerSegmentPrefix) {
+        final Set<Object> parents = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Object> parentsStillMatching = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Match> narrowed = new ArrayList<>();
+        for (final Match match : this.matches) {
+            if (match.parent != null) {
+                parents.add(match.parent);
+            }
+            if (match.name.startsWith(longerSegmentPrefix)) {
+                narrowed.add(match);
+                if (match.parent != null) {
+                    parentsStillMatching.add(match.parent);
+                }
+            }
+        }
+        return parentsStillMatching.size() == parents.size() ? new LastSegmentMatches(narrowed) : null;
+    }
+
+    /**
+     * @return suggestions below all the matched nodes, in the order they were found
+     */
+    public List<Suggestion> getSuggestions() {
+        final List<Suggestion> suggestions = new ArrayList<>();
+        for (final Match match : this.matches) {
+            suggestions.addAll(match.suggestions);
+        }
+        return suggestions;
+    }
+
+    @ToString(of = "name")
+    private static final class Match {
+        @Nullable
+        private final Object parent;
+        private final String name;
+        private final List<Suggestion> suggestions;
+
+        private Match(@Nullable final Object parent, final String name, final List<Suggestion> suggestions) {
+            this.parent = parent;
+            this.name = name;
+            this.suggestions = suggestions;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
+
+import gnu.trove.THashMap;
+import in.oneton.idea.spring.assistant.plugin.misc.LazyTrie;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Children of a {@link MetadataNonPropertySuggestionNode}, keyed by their sanitised names.
+ * <p>
+ * Most nodes only have a handful of children, so they are kept in a pair of arrays sorted by name. Both exact & prefix
+ * lookups are binary searches over the names. Once a node outgrows {@link #MAX_COMPACT_SIZE} children, they are moved
+ * to a hash lookup, & a trie for prefix lookups is only built once the node is actually prefix searched.
+ * <p>
+ * Narrow nodes iterate in the sorted order of the names, wide nodes in no particular order. Instances are never modified,
+ * adding/removing a child builds a replacement that the owning node swaps in. So searches can walk the children of the
+ * published generation while a small change is applied to it in place (see MetadataIndex#read). A narrow node copies at
+ * most {@link #MAX_COMPACT_SIZE} entries per change, a wide one its whole lookup
+ */
+final class MetadataChildNodes {
+
+    static final int MAX_COMPACT_SIZE = 8;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    @Nullable
+    private final String[] names;
+    @Nullable
+    private final MetadataSuggestionNode[] nodes;
+    /**
+     * Only present for wide nodes, in which case the arrays are not
+     */
+    @Nullable
+    private final Map<String, MetadataSuggestionNode> lookup;
+    @Nullable
+    private final LazyTrie<MetadataSuggestionNode> trie;
+
+    private MetadataChildNodes(final String[] names, final MetadataSuggestionNode[] nodes) {
+        this.names = names;
+        this.nodes = nodes;
+        this.lookup = null;
+        this.trie = null;
+    }
+
+    private MetadataChildNodes(final Map<String, MetadataSuggestionNode> lookup) {
+        this.names = null;
+        this.nodes = null;
+        this.lookup = lookup;
+        this.trie = new LazyTrie<>(lookup);
+    }
+
+    static MetadataChildNodes of(final String name, final MetadataSuggestionNode node) {
+        return new MetadataChildNodes(new String[]{name}, new MetadataSuggestionNode[]{node});
+    }
+
+    @Nullable
+    MetadataSuggestionNode get(final String name) {
+        if (this.lookup != null) {
+            return this.lookup.get(name);
+        }
+        assert this.names != null && this.nodes != null;
+        final int index = Arrays.binarySearch(this.names, name);
+        return index >= 0 ? this.nodes[index] : null;
+    }
+
+    /**
+     * @return children with {@code node} added, replacing the child with the same name if any
+     */
+    MetadataChildNodes with(final String name, final MetadataSuggestionNode node) {
+        if (this.lookup != null) {
+            final Map<String, MetadataSuggestionNode> lookupCopy = new THashMap<>(this.lookup);
+            lookupCopy.put(name, node);
+            return new MetadataChildNodes(lookupCopy);
+        }
+        assert this.names != null && this.nodes != null;
+
+        final int index = Arrays.binarySearch(this.names, name);
+        if (index >= 0) {
+            final MetadataSuggestionNode[] nodesCopy = this.nodes.clone();
+            nodesCopy[index] = node;
+            return new MetadataChildNodes(this.names, nodesCopy);
+        }
+
+        final int size = this.names.length;
+        if (size == MAX_COMPACT_SIZE) {
+            final Map<String, MetadataSuggestionNode> promoted = new THashMap<>();
+            for (int i = 0; i < size; i++) {
+                promoted.put(this.names[i], this.nodes[i]);
+            }
+            promoted.put(name, node);
+            return new MetadataChildNodes(promoted);
+        }
+
+        final int insertAt = -(index + 1);
+        final String[] namesCopy = new String[size + 1];
+        final MetadataSuggestionNode[] nodesCopy = new MetadataSuggestionNode[size + 1];
+        System.arraycopy(this.names, 0, namesCopy, 0, insertAt);
+        System.arraycopy(this.nodes, 0, nodesCopy, 0, insertAt);
+        namesCopy[insertAt] = name;
+        nodesCopy[insertAt] = node;
+        System.arraycopy(this.names, insertAt, namesCopy, insertAt + 1, size - insertAt);
+        System.arraycopy(this.nodes, insertAt, nodesCopy, insertAt + 1, size - insertAt);
+        return new MetadataChildNodes(namesCopy, nodesCopy);
+    }
+
+    /**
+     * @return children without the child named {@code name}, null if none would be left
+     */
+    @Nullable
+    MetadataChildNodes without(final String name) {
+        if (this.lookup != null) {
+            if (!this.lookup.containsKey(name)) {
+                return this;
+            }
+            if (this.lookup.size() == 1) {
+                return null;
+            }
+            final Map<String, MetadataSuggestionNode> lookupCopy = new THashMap<>(this.lookup);
+            lookupCopy.remove(name);
+            return new MetadataChildNodes(lookupCopy);
+        }
+        assert this.names != null && this.nodes != null;
+
+        final int index = Arrays.binarySearch(this.names, name);
+        if (index < 0) {
+            return this;
+        }
+        final int size = this.names.length;
+        if (size == 1) {
+            return null;
+        }
+        final String[] namesCopy = new String[size - 1];
+        final MetadataSuggestionNode[] nodesCopy = new MetadataSuggestionNode[size - 1];
+        System.arraycopy(this.names, 0, namesCopy, 0, index);
+        System.arraycopy(this.nodes, 0, nodesCopy, 0, index);
+        System.arraycopy(this.names, index + 1, namesCopy, index, size - index - 1);
+        System.arraycopy(this.nodes, index + 1, nodesCopy, index, size - index - 1);
+        return new MetadataChildNodes(namesCopy, nodesCopy);
+    }
+
+    int size() {
+        if (this.lookup != null) {
+            return this.lookup.size();
+        }
+        assert this.names != null;
+        return this.names.length;
+    }
+
+    Collection<MetadataSuggestionNode> values() {
+        if (this.lookup != null) {
+            return unmodifiableCollection(this.lookup.values());
+        }
+        assert this.nodes != null;
+        return unmodifiableList(Arrays.asList(this.nodes));
+    }
+
+    /**
+     * @return children whose names start with {@code prefix}, sorted by name
+     */
+    Collection<MetadataSuggestionNode> prefixValues(final String prefix) {
+        if (this.trie != null) {
+            // built on first use, see LazyTrie
+            return this.trie.prefixMap(prefix).values();
+        }
+        assert this.names != null && this.nodes != null;
+
+        final int index = Arrays.binarySearch(this.names, prefix);
+        final int from = index >= 0 ? index : -(index + 1);
+        int to = from;
+        while (to < this.names.length && this.names[to].startsWith(prefix)) {
+            to++;
+        }
+        final List<MetadataSuggestionNode> matches = Arrays.asList(this.nodes).subList(from, to);
+        return unmodifiableList(matches);
+    }
+
+    void forEach(final BiConsumer<String, MetadataSuggestionNode> consumer) {
+        if (this.lookup != null) {
+            this.lookup.forEach(consumer);
+            return;
+        }
+        assert this.names != null && this.nodes != null;
+        for (int i = 0; i < this.names.length; i++) {
+            consumer.accept(this.names[i], this.nodes[i]);
+        }
+    }
+
+    /**
+     * @param childCopier creates the copy of a child
+     * @return copy with the same layout as this one, holding copies of the children
+     */
+    MetadataChildNodes copy(final UnaryOperator<MetadataSuggestionNode> childCopier) {
+        if (this.lookup != null) {
+            final Map<String, MetadataSuggestionNode> lookupCopy = new THashMap<>(this.lookup.size());
+            this.lookup.forEach((name, node) -> lookupCopy.put(name, childCopier.apply(node)));
+            return new MetadataChildNodes(lookupCopy);
+        }
+        assert this.names != null && this.nodes != null;
+        final MetadataSuggestionNode[] nodesCopy = new MetadataSuggestionNode[this.nodes.length];
+        for (int i = 0; i < this.nodes.length; i++) {
+            nodesCopy[i] = childCopier.apply(this.nodes[i]);
+        }
+        // names are never modified, so they can be shared
+        return new MetadataChildNodes(this.names, nodesCopy);
+    }
+
+    /**
+     * @return estimated heap used by the container itself, excluding the children
+     */
+    long estimateSize() {
+        if (this.lookup != null) {
+            // the trie is softly reachable, so it is not accounted for
+            return MetadataSuggestionNode.COLLECTION_OVERHEAD_BYTES
+                    + (long) this.lookup.size() * MetadataSuggestionNode.ENTRY_OVERHEAD_BYTES;
+        }
+        assert this.names != null;
+        return MetadataSuggestionNode.NODE_SHELL_BYTES + 2L * (ARRAY_HEADER_BYTES + (long) this.names.length * REFERENCE_BYTES);
+    }
+
+}
@@ -1,5 +1,6 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
 
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VFileProperty;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -27,6 +28,8 @@ public class MetadataContainerInfo {
 
     public static final String SPRING_CONFIGURATION_METADATA_JSON = "spring-configuration-metadata.json";
     public static final String ADDITIONAL_SPRING_CONFIGURATION_METADATA_JSON = "additional-spring-configuration-metadata.json";
+    private static final String META_INF = "META-INF";
+    private static final Key<RootMetadataFiles> ROOT_METADATA_FILES_KEY = Key.create("spring_assistant_plugin_root_metadata_files");
 
     /**
      * Can point to archive/directory containing the metadata file
@@ -74,20 +77,39 @@ public class MetadataContainerInfo {
                 : fileContainer;
     }
 
+    @Nullable
     private static VirtualFile findMetadataFile(final VirtualFile root, final String metadataFileName) {
-        if (!root.is(VFileProperty.SYMLINK)) {
-            //noinspection UnsafeVfsRecursion
-            for (final VirtualFile child : root.getChildren()) {
-                if (child.getName().equals(metadataFileName)) {
-                    return child;
-                }
-                final VirtualFile matchedFile = findMetadataFile(child, metadataFileName);
-                if (matchedFile != null) {
-                    return matchedFile;
-                }
-            }
+        final RootMetadataFiles rootMetadataFiles = findRootMetadataFiles(root);
+        return SPRING_CONFIGURATION_METADATA_JSON.equals(metadataFileName)
+                ? rootMetadataFiles.metadataFile : rootMetadataFiles.additionalMetadataFile;
+    }
+
+    /**
+     * Spring only ever reads the metadata from `META-INF` of a classpath root, so lets look there directly instead of
+     * walking every package of the root. Result is kept on the root till files get created/deleted/moved anywhere in VFS,
+     * as a single index run looks up the same roots more than once
+     */
+    private static RootMetadataFiles findRootMetadataFiles(final VirtualFile root) {
+        final long structureModificationCount = VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS.getModificationCount();
+        final RootMetadataFiles cached = root.getUserData(ROOT_METADATA_FILES_KEY);
+        if (cached != null && cached.structureModificationCount == structureModificationCount) {
+            return cached;
         }
-        return null;
+
+        final VirtualFile metaInf = root.isDirectory() && !root.is(VFileProperty.SYMLINK) ? root.findChild(META_INF) : null;
+        final RootMetadataFiles rootMetadataFiles = new RootMetadataFiles(structureModificationCount,
+                findFile(metaInf, SPRING_CONFIGURATION_METADATA_JSON), findFile(metaInf, ADDITIONAL_SPRING_CONFIGURATION_METADATA_JSON));
+        root.putUserData(ROOT_METADATA_FILES_KEY, rootMetadataFiles);
+        return rootMetadataFiles;
+    }
+
+    @Nullable
+    private static VirtualFile findFile(@Nullable final VirtualFile directory, final String name) {
+        if (directory == null || !directory.isDirectory()) {
+            return null;
+        }
+        final VirtualFile file = directory.findChild(name);
+        return file != null && !file.isDirectory() ? file : null;
     }
 
     public static Collection<MetadataContainerInfo> newInstances(final VirtualFile fileContainer) {
@@ -142,4 +164,19 @@ public class MetadataContainerInfo {
         assert this.fileUrl != null;
         return VirtualFileManager.getInstance().findFileByUrl(this.fileUrl);
     }
+
+    private static final class RootMetadataFiles {
+        private final long structureModificationCount;
+        @Nullable
+        private final VirtualFile metadataFile;
+        @Nullable
+        private final VirtualFile additionalMetadataFile;
+
+        private RootMetadataFiles(final long structureModificationCount, @Nullable final VirtualFile metadataFile,
+                                  @Nullable final VirtualFile additionalMetadataFile) {
+            this.structureModificationCount = structureModificationCount;
+            this.metadataFile = metadataFile;
+            this.additionalMetadataFile = additionalMetadataFile;
+        }
+    }
 }
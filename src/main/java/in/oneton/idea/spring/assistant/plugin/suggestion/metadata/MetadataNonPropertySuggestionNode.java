@@ -2,8 +2,8 @@ package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.PsiType;
-import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil;
 import in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion;
@@ -12,6 +12,7 @@ import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNodeType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataGroup;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -20,19 +21,16 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.Trie;
-import org.apache.commons.collections4.trie.PatriciaTrie;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.BiConsumer;
 
 import static in.oneton.idea.spring.assistant.plugin.misc.GenericUtil.newListWithMembers;
 import static in.oneton.idea.spring.assistant.plugin.misc.GenericUtil.newSingleElementSortedSet;
@@ -140,28 +138,29 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
      */
     private Set<String> belongsTo;
     /**
-     * Child name -> child node. Aids in quick lookup. NOTE: All keys are sanitized
+     * Child name -> child node. Aids in both exact & prefix based lookups. NOTE: All keys are sanitized
+     * <p>
+     * Never modified, only replaced (see {@link MetadataChildNodes}). Searches might run while the index is updated in
+     * place, so readers must read it once into a local
      */
     @Nullable
-    private Map<String, MetadataSuggestionNode> childLookup;
-
-    /**
-     * Child trie for the nodes at next level, aids in prefix based searching. NOTE: All keys are sanitized
-     */
-    @Nullable
-    private Trie<String, MetadataSuggestionNode> childrenTrie;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private MetadataChildNodes children;
 
     /**
      * @param originalName name that is not sanitised
      * @param parent       parent MetadataNonPropertySuggestionNode node
      * @param belongsTo    file/jar containing this property
+     * @param stringPool   pool of the index the node is built for
      * @return newly constructed group node
      */
     public static MetadataNonPropertySuggestionNode newInstance(final String originalName,
-                                                                @Nullable final MetadataNonPropertySuggestionNode parent, final String belongsTo) {
+                                                                @Nullable final MetadataNonPropertySuggestionNode parent, final String belongsTo,
+                                                                final MetadataStringPool stringPool) {
         final MetadataNonPropertySuggestionNodeBuilder builder =
-                MetadataNonPropertySuggestionNode.builder().name(SuggestionNode.sanitise(originalName))
-                        .originalName(originalName).parent(parent);
+                MetadataNonPropertySuggestionNode.builder().name(stringPool.intern(SuggestionNode.sanitise(originalName)))
+                        .originalName(stringPool.intern(originalName)).parent(parent);
         final Set<String> belongsToSet = new THashSet<>();
         belongsToSet.add(belongsTo);
         builder.belongsTo(belongsToSet);
@@ -184,10 +183,10 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         final boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
         final String pathSegment = pathSegments[pathSegmentStartIndex];
 
-        if (this.hasChildren()) {
-            assert this.childLookup != null;
-            if (this.childLookup.containsKey(pathSegment)) {
-                final MetadataSuggestionNode child = this.childLookup.get(pathSegment);
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            final MetadataSuggestionNode child = currentChildren.get(pathSegment);
+            if (child != null) {
                 if (lastSegment) {
                     deepestMatch = child;
                 } else {
@@ -215,10 +214,10 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         if (haveMoreSegments) {
             final String currentPathSegment = pathSegments[pathSegmentStartIndex];
             final boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
-            if (this.hasChildren()) {
-                assert this.childLookup != null;
-                if (this.childLookup.containsKey(currentPathSegment)) {
-                    final MetadataSuggestionNode child = this.childLookup.get(currentPathSegment);
+            final MetadataChildNodes currentChildren = this.children;
+            if (currentChildren != null) {
+                final MetadataSuggestionNode child = currentChildren.get(currentPathSegment);
+                if (child != null) {
                     matchesRootTillMe.add(child);
                     if (lastSegment) {
                         deepestMatch = matchesRootTillMe;
@@ -237,26 +236,36 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         return deepestMatch;
     }
 
-    public void addChildren(final Module module, final SpringConfigurationMetadataGroup group,
-                            final String[] rawPathSegments, final int startIndex, final String belongsTo) {
+    /**
+     * @return node the group got assigned to
+     */
+    public MetadataNonPropertySuggestionNode addChildren(final Module module, final SpringConfigurationMetadataGroup group,
+                                                         final String[] rawPathSegments, final int startIndex, final String belongsTo,
+                                                         final MetadataStringPool stringPool) {
         final MetadataNonPropertySuggestionNode groupNode =
-                this.addChildren(rawPathSegments, startIndex, rawPathSegments.length - 1, belongsTo);
+                this.addChildren(rawPathSegments, startIndex, rawPathSegments.length - 1, belongsTo, stringPool);
+        // node might have already existed, lets make sure it belongs to this source as well
+        groupNode.addRefCascadeTillRoot(belongsTo);
         groupNode.setGroup(module, group);
+        return groupNode;
     }
 
-    public void addChildren(final SpringConfigurationMetadataProperty property, final String[] rawPathSegments,
-                            final int startIndex, final String belongsTo) {
+    /**
+     * @return newly added property node
+     */
+    public MetadataSuggestionNode addChildren(final SpringConfigurationMetadataProperty property, final String[] rawPathSegments,
+                                              final int startIndex, final String belongsTo, final MetadataStringPool stringPool) {
         final MetadataNonPropertySuggestionNode parentNode;
         // since last property is the actual property, lets only add children only till last but one
         final int endIndexIncl = rawPathSegments.length - 2;
         if (startIndex <= endIndexIncl) {
-            parentNode = this.addChildren(rawPathSegments, startIndex, endIndexIncl, belongsTo);
+            parentNode = this.addChildren(rawPathSegments, startIndex, endIndexIncl, belongsTo, stringPool);
         } else {
             parentNode = this;
             this.addRefCascadeTillRoot(belongsTo);
         }
 
-        parentNode.addProperty(property, rawPathSegments[rawPathSegments.length - 1], belongsTo);
+        return parentNode.addProperty(property, rawPathSegments[rawPathSegments.length - 1], belongsTo, stringPool);
     }
 
     @Override
@@ -265,31 +274,31 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
                                                                   final List<SuggestionNode> matchesRootTillMe,
                                                                   final int numOfAncestors, final String[] querySegmentPrefixes,
                                                                   final int querySegmentPrefixStartIndex,
-                                                                  @Nullable final Set<String> siblingsToExclude) {
+                                                                  @Nullable final Set<String> siblingsToExclude,
+                                                                  final KeySearchContext searchContext) {
 
         final boolean lookingForConcreteNode = querySegmentPrefixStartIndex >= querySegmentPrefixes.length;
         if (lookingForConcreteNode) {
-            return this.lookingForConcreteNode(module, fileType, matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex);
+            return this.lookingForConcreteNode(module, fileType, matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, searchContext);
+        }
 
-        } else if (this.hasChildren()) {
-            return this.getSuggestionsChildren(module, fileType, matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude);
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            return this.getSuggestionsChildren(module, fileType, matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude, searchContext, currentChildren);
         }
         return null;
     }
 
     private SortedSet<Suggestion> getSuggestionsChildren(final Module module, final FileType fileType, final List<SuggestionNode> matchesRootTillMe,
                                                          final int numOfAncestors, final String[] querySegmentPrefixes, final int querySegmentPrefixStartIndex,
-                                                         final @org.jetbrains.annotations.Nullable Set<String> siblingsToExclude) {
-        assert this.childrenTrie != null;
-        assert this.childLookup != null;
+                                                         final @org.jetbrains.annotations.Nullable Set<String> siblingsToExclude,
+                                                         final KeySearchContext searchContext, final MetadataChildNodes currentChildren) {
         final String querySegmentPrefix = querySegmentPrefixes[querySegmentPrefixStartIndex];
-        final SortedMap<String, MetadataSuggestionNode> sortedPrefixToMetadataNode =
-                this.childrenTrie.prefixMap(querySegmentPrefix);
-        Collection<MetadataSuggestionNode> matchedChildren = sortedPrefixToMetadataNode.values();
+        Collection<MetadataSuggestionNode> matchedChildren = currentChildren.prefixValues(querySegmentPrefix);
 
         Set<MetadataSuggestionNode> exclusionMembers = null;
         if (siblingsToExclude != null) {
-            exclusionMembers = siblingsToExclude.stream().map(this.childLookup::get).collect(toSet());
+            exclusionMembers = siblingsToExclude.stream().map(currentChildren::get).collect(toSet());
         }
 
         if (!isEmpty(exclusionMembers) && !isEmpty(matchedChildren)) {
@@ -300,41 +309,47 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         }
 
         int segmentPrefixStartIndex = querySegmentPrefixStartIndex;
+        final boolean lastSegmentMatched;
         if (matchedChildren.size() == 0) {
-            matchedChildren = this.computeChildrenToIterateOver(this.childLookup, exclusionMembers);
+            matchedChildren = this.computeChildrenToIterateOver(currentChildren, exclusionMembers);
+            lastSegmentMatched = false;
         } else {
             segmentPrefixStartIndex = segmentPrefixStartIndex + 1;
+            lastSegmentMatched = segmentPrefixStartIndex == querySegmentPrefixes.length;
         }
         // lets search in the next level
         return this.addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe, numOfAncestors,
-                querySegmentPrefixes, segmentPrefixStartIndex, matchedChildren);
+                querySegmentPrefixes, segmentPrefixStartIndex, matchedChildren, lastSegmentMatched, searchContext);
     }
 
-    private SortedSet<Suggestion> lookingForConcreteNode(final Module module, final FileType fileType, final List<SuggestionNode> matchesRootTillMe, final int numOfAncestors, final String[] querySegmentPrefixes, final int querySegmentPrefixStartIndex) {
+    private SortedSet<Suggestion> lookingForConcreteNode(final Module module, final FileType fileType, final List<SuggestionNode> matchesRootTillMe, final int numOfAncestors, final String[] querySegmentPrefixes, final int querySegmentPrefixStartIndex,
+                                                         final KeySearchContext searchContext) {
+        final MetadataChildNodes currentChildren = this.children;
         if (this.isGroup()) {
             // If we have only one child, lets send the child value directly instead of this node. This way user does not need trigger suggestion for level, esp. when we know there will is only be one child
-            if (this.hasOnlyOneChild()) {
-                assert this.childrenTrie != null;
+            if (currentChildren != null && currentChildren.size() == 1) {
                 return this.addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
                         numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-                        this.childrenTrie.values());
+                        currentChildren.values(), false, searchContext);
             } else { // either there are no children/multiple children are present. Lets return suggestions
                 assert this.group != null;
-                return newSingleElementSortedSet(
-                        this.group.newSuggestion(fileType, matchesRootTillMe, numOfAncestors));
+                searchContext.consume(1);
+                return newSingleElementSortedSet(this.cachedKeySuggestion(this.group, fileType, numOfAncestors,
+                        () -> this.group.newSuggestion(fileType, matchesRootTillMe, numOfAncestors)));
             }
         } else { // intermediate node, lets get all next level groups & properties
-            assert this.childrenTrie != null;
+            assert currentChildren != null;
             return this.addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
                     numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-                    this.childrenTrie.values());
+                    currentChildren.values(), false, searchContext);
         }
     }
 
     @Override
     protected boolean hasOnlyOneChild() {
-        return this.childrenTrie != null && this.childrenTrie.size() == 1;
-        //     && childrenTrie.values().stream()
+        final MetadataChildNodes currentChildren = this.children;
+        return currentChildren != null && currentChildren.size() == 1;
+        //     && children.values().stream()
         //        .allMatch(MetadataSuggestionNode::hasOnlyOneChild)
     }
 
@@ -343,45 +358,64 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         final StringBuilder builder = new StringBuilder(this.originalName)
                 .append(this.isRoot() ? "(root + group)" : (this.isGroup() ? "(group)" : "(intermediate)"))
                 .append("\n");
-        if (this.childLookup != null) {
-            this.childLookup.forEach(
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            currentChildren.forEach(
                     (k, v) -> builder.append(v.toTree().trim().replaceAll("\\^", "  ").replaceAll("\n", "\n  "))
                             .append("\n"));
         }
         return builder.toString();
     }
 
-    /**
-     * @param containerPath Represents path to the metadata file container
-     * @return true if no children left & this item does not belong to any other source
-     */
     @Override
-    public boolean removeRefCascadeDown(final String containerPath) {
-        this.belongsTo.remove(containerPath);
-        // If the current node & all its children belong to a single file, lets remove the whole tree
-        if (this.belongsTo.size() == 0) {
-            return true;
+    public MetadataNonPropertySuggestionNode deepCopy(@Nullable final MetadataNonPropertySuggestionNode parent,
+                                                      final Map<MetadataSuggestionNode, MetadataSuggestionNode> originalToCopy) {
+        final MetadataNonPropertySuggestionNode copy = MetadataNonPropertySuggestionNode.builder().name(this.name)
+                .originalName(this.originalName).group(this.group).parent(parent)
+                .belongsTo(new THashSet<>(this.belongsTo)).build();
+        originalToCopy.put(this, copy);
+
+        if (this.children != null) {
+            copy.children = this.children.copy(child -> child.deepCopy(copy, originalToCopy));
         }
+        return copy;
+    }
 
-        if (this.hasChildren()) {
-            assert this.childLookup != null;
-            assert this.childrenTrie != null;
-            final Iterator<MetadataSuggestionNode> iterator = this.childrenTrie.values().iterator();
-            while (iterator.hasNext()) {
-                final MetadataSuggestionNode child = iterator.next();
-                final boolean canRemoveReference = child.removeRefCascadeDown(containerPath);
-                if (canRemoveReference) {
-                    iterator.remove();
-                    this.childLookup.remove(child.getName());
-                    this.childrenTrie.remove(child.getName());
-                }
+    @Override
+    public long estimateRetainedSize() {
+        long size = this.estimateOwnSize();
+        if (this.group != null) {
+            size += NODE_SHELL_BYTES + estimateSize(this.group.getName()) + estimateSize(this.group.getClassName())
+                    + estimateSize(this.group.getDescription()) + estimateSize(this.group.getSourceType())
+                    + estimateSize(this.group.getSourceMethod());
+        }
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            size += currentChildren.estimateSize();
+            for (final MetadataSuggestionNode child : currentChildren.values()) {
+                size += child.estimateRetainedSize();
             }
-            if (!this.hasChildren()) {
-                this.childLookup = null;
-                this.childrenTrie = null;
+        }
+        return size;
+    }
+
+    @Override
+    public void visitSubtree(final BiConsumer<String, MetadataSuggestionNode> visitor) {
+        super.visitSubtree(visitor);
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            for (final MetadataSuggestionNode child : currentChildren.values()) {
+                child.visitSubtree(visitor);
             }
         }
-        return false;
+    }
+
+    void removeChild(final MetadataSuggestionNode child) {
+        final String childName = child.getName();
+        // child might have already been replaced by a newer node with the same name
+        if (this.children != null && this.children.get(childName) == child) {
+            this.children = this.children.without(childName);
+        }
     }
 
     @Override
@@ -435,10 +469,6 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
         return true;
     }
 
-    private boolean hasChildren() {
-        return this.childrenTrie != null && this.childrenTrie.size() != 0;
-    }
-
     @NotNull
     @Override
     public SuggestionNodeType getSuggestionNodeType(final Module module) {
@@ -458,80 +488,78 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
     @Override
     public void refreshClassProxy(final Module module) {
         this.updateGroupType(module, this.group);
-        if (this.hasChildren()) {
-            assert this.childLookup != null;
-            this.childLookup.values().forEach(child -> child.refreshClassProxy(module));
+        final MetadataChildNodes currentChildren = this.children;
+        if (currentChildren != null) {
+            currentChildren.values().forEach(child -> child.refreshClassProxy(module));
         }
     }
 
-    private Collection<MetadataSuggestionNode> computeChildrenToIterateOver(@NotNull final Map<String, MetadataSuggestionNode> childLookup,
+    private Collection<MetadataSuggestionNode> computeChildrenToIterateOver(@NotNull final MetadataChildNodes children,
                                                                             final Set<MetadataSuggestionNode> exclusionMembers) {
         if (CollectionUtils.isEmpty(exclusionMembers)) {
-            return childLookup.values();
+            return children.values();
         } else {
-            return childLookup.values().stream()
+            return children.values().stream()
                     .filter(value -> !exclusionMembers.contains(value))
                     .collect(toList());
         }
     }
 
-    private void addProperty(final SpringConfigurationMetadataProperty property, final String originalName, final String belongsTo) {
+    private MetadataSuggestionNode addProperty(final SpringConfigurationMetadataProperty property, final String originalName,
+                                               final String belongsTo, final MetadataStringPool stringPool) {
         this.addRefCascadeTillRoot(belongsTo);
-        if (!this.hasChildren()) {
-            this.childLookup = new THashMap<>();
-            this.childrenTrie = new PatriciaTrie<>();
-        }
-
-        assert this.childLookup != null;
-        assert this.childrenTrie != null;
-        final MetadataSuggestionNode childNode = MetadataPropertySuggestionNode.newInstance(originalName, property, this, belongsTo);
-
-        final String nameSanitised = SuggestionNode.sanitise(originalName);
-        try {
-            this.childLookup.put(nameSanitised, childNode);
-            this.childrenTrie.put(nameSanitised, childNode);
-        } catch (final IllegalArgumentException exception) {
-            log.error(exception);
-        }
+        final MetadataSuggestionNode childNode = MetadataPropertySuggestionNode.newInstance(originalName, property, this, belongsTo, stringPool);
+        this.putChild(childNode);
+        return childNode;
     }
 
     private MetadataNonPropertySuggestionNode addChildren(final String[] rawPathSegments, final int startIndex,
-                                                          final int endIndexIncl, final String belongsTo) {
+                                                          final int endIndexIncl, final String belongsTo,
+                                                          final MetadataStringPool stringPool) {
         this.addRefCascadeTillRoot(belongsTo);
-        if (!this.hasChildren()) {
-            this.childLookup = new THashMap<>();
-            this.childrenTrie = new PatriciaTrie<>();
-        }
-
-        assert this.childLookup != null;
-        assert this.childrenTrie != null;
 
         final String rawPathSegment = rawPathSegments[startIndex];
         final String pathSegment = SuggestionNode.sanitise(rawPathSegment);
 
-        var childNode = (MetadataNonPropertySuggestionNode) this.childLookup.get(pathSegment);
+        var childNode = this.children != null ? (MetadataNonPropertySuggestionNode) this.children.get(pathSegment) : null;
         if (childNode == null) {
-            childNode = MetadataNonPropertySuggestionNode.newInstance(rawPathSegment, this, belongsTo);
+            childNode = MetadataNonPropertySuggestionNode.newInstance(rawPathSegment, this, belongsTo, stringPool);
             childNode.setParent(this);
-
-            this.childLookup.put(pathSegment, childNode);
-            this.childrenTrie.put(pathSegment, childNode);
+            this.putChild(childNode);
         }
         // If this is the last segment, lets set group
-        return startIndex >= endIndexIncl ? childNode : childNode.addChildren(rawPathSegments, startIndex + 1, endIndexIncl, belongsTo);
+        return startIndex >= endIndexIncl ? childNode : childNode.addChildren(rawPathSegments, startIndex + 1, endIndexIncl, belongsTo, stringPool);
+    }
+
+    /**
+     * Swaps in children holding {@code childNode} in place of the current ones
+     */
+    private void putChild(final MetadataSuggestionNode childNode) {
+        // key shares the pooled name of the node
+        this.children = this.children != null ? this.children.with(childNode.getName(), childNode)
+                : MetadataChildNodes.of(childNode.getName(), childNode);
     }
 
     private SortedSet<Suggestion> addChildToMatchesAndSearchInNextLevel(final Module module,
                                                                         final FileType fileType, final List<SuggestionNode> matchesRootTillParentNode, final int numOfAncestors,
                                                                         final String[] querySegmentPrefixes, final int querySegmentPrefixStartIndex,
-                                                                        final Collection<MetadataSuggestionNode> childNodes) {
+                                                                        final Collection<MetadataSuggestionNode> childNodes,
+                                                                        final boolean lastSegmentMatched,
+                                                                        final KeySearchContext searchContext) {
         SortedSet<Suggestion> suggestions = null;
         for (final MetadataSuggestionNode child : childNodes) {
+            if (searchContext.isExhausted()) {
+                break;
+            }
+            ProgressManager.checkCanceled();
             final List<SuggestionNode> matchesRootTillChild =
                     unmodifiableList(newListWithMembers(matchesRootTillParentNode, child));
             final Set<Suggestion> matchedSuggestions = child
                     .findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillChild, numOfAncestors,
-                            querySegmentPrefixes, querySegmentPrefixStartIndex, null);
+                            querySegmentPrefixes, querySegmentPrefixStartIndex, null, searchContext);
+            if (lastSegmentMatched) {
+                searchContext.onLastSegmentMatched(this, child.getName(), matchedSuggestions);
+            }
             if (matchedSuggestions != null) {
                 if (suggestions == null) {
                     suggestions = new TreeSet<>();
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -63,14 +64,16 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
      * @param property     property to associate
      * @param parent       parent MetadataNonPropertySuggestionNode node
      * @param belongsTo    file/jar containing this property
+     * @param stringPool   pool of the index the node is built for
      * @return newly constructed property node
      */
     public static MetadataPropertySuggestionNode newInstance(String originalName,
                                                              @NotNull SpringConfigurationMetadataProperty property,
-                                                             @Nullable MetadataNonPropertySuggestionNode parent, String belongsTo) {
+                                                             @Nullable MetadataNonPropertySuggestionNode parent, String belongsTo,
+                                                             MetadataStringPool stringPool) {
         MetadataPropertySuggestionNode.MetadataPropertySuggestionNodeBuilder builder =
-                MetadataPropertySuggestionNode.builder().name(sanitise(originalName))
-                        .originalName(originalName).property(property).parent(parent);
+                MetadataPropertySuggestionNode.builder().name(stringPool.intern(sanitise(originalName)))
+                        .originalName(stringPool.intern(originalName)).property(property).parent(parent);
         Set<String> belongsToSet = new THashSet<>();
         belongsToSet.add(belongsTo);
         builder.belongsTo(belongsToSet);
@@ -152,16 +155,25 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
                                                                   final int numOfAncestors,
                                                                   final String[] querySegmentPrefixes,
                                                                   final int querySegmentPrefixStartIndex,
-                                                                  @Nullable final Set<String> siblingsToExclude) {
+                                                                  @Nullable final Set<String> siblingsToExclude,
+                                                                  final KeySearchContext searchContext) {
         if (!property.isDeprecatedError()) {
             boolean lookingForConcreteNode = querySegmentPrefixStartIndex >= querySegmentPrefixes.length;
             if (lookingForConcreteNode) {
-                return newSingleElementSortedSet(property.buildKeySuggestion(module, fileType, matchesRootTillMe, numOfAncestors));
+                searchContext.consume(1);
+                return newSingleElementSortedSet(cachedKeySuggestion(property, fileType, numOfAncestors,
+                        () -> property.buildKeySuggestion(module, fileType, matchesRootTillMe, numOfAncestors)));
 
             } else if (!property.isLeaf(module)) {
-
-                return property.findChildKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe,
-                        numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude);
+                // children of a property come from its class, which are bounded by the class itself. The class matches
+                // the remaining segments (the last one included) against its members, which the trace can not follow
+                searchContext.stopTracing();
+                SortedSet<Suggestion> suggestions = property.findChildKeySuggestionsForQueryPrefix(module, fileType,
+                        matchesRootTillMe, numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude);
+                if (suggestions != null) {
+                    searchContext.consume(suggestions.size());
+                }
+                return suggestions;
             }
         }
 
@@ -218,10 +230,21 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
     }
 
     @Override
-    public boolean removeRefCascadeDown(String containerPath) {
-        belongsTo.remove(containerPath);
-        // If the current node & all its children belong to a single file, lets remove the whole tree
-        return belongsTo.isEmpty();
+    public MetadataPropertySuggestionNode deepCopy(@Nullable MetadataNonPropertySuggestionNode parent,
+                                                   Map<MetadataSuggestionNode, MetadataSuggestionNode> originalToCopy) {
+        MetadataPropertySuggestionNode copy = MetadataPropertySuggestionNode.builder().name(name)
+                .originalName(originalName).property(property).parent(parent)
+                .belongsTo(new THashSet<>(belongsTo)).build();
+        originalToCopy.put(this, copy);
+        return copy;
+    }
+
+    @Override
+    public long estimateRetainedSize() {
+        // deferred details only cost a reference into the shared payload
+        return estimateOwnSize() + NODE_SHELL_BYTES + estimateSize(property.getName()) + estimateSize(property.getClassName())
+                + (property.hasDeferredDetails() ? NODE_SHELL_BYTES : estimateSize(property.getDescription()))
+                + estimateSize(property.getSourceType());
     }
 
     @Override
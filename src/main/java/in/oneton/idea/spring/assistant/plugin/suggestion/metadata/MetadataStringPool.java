@@ -0,0 +1,51 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata;
+
+import gnu.trove.THashMap;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Deduplicates the strings retained by an index. Metadata is full of repeated strings (class names, source types, name
+ * segments like `enabled`, `url`, `password`), & each decoded entry/node would otherwise hold its own copy.
+ * <p>
+ * Unlike {@link String#intern()}, the pool is scoped to the index that uses it, so its strings are released along with the
+ * index. Not thread safe, only the indexer that owns the index is expected to use it
+ */
+@ToString(of = {"bytesSaved"})
+public class MetadataStringPool {
+
+    private final Map<String, String> pool = new THashMap<>();
+    /**
+     * Rough estimate of the heap saved by handing out pooled instances instead of the duplicates
+     */
+    @Getter
+    private long bytesSaved;
+
+    /**
+     * @return pooled instance equal to {@code value}, {@code value} itself if it was not seen before
+     */
+    @Nullable
+    public String intern(@Nullable final String value) {
+        if (value == null) {
+            return null;
+        }
+
+        final String pooled = this.pool.putIfAbsent(value, value);
+        if (pooled == null) {
+            return value;
+        }
+
+        if (pooled != value) {
+            this.bytesSaved += MetadataSuggestionNode.estimateSize(value);
+        }
+        return pooled;
+    }
+
+    public int size() {
+        return this.pool.size();
+    }
+
+}
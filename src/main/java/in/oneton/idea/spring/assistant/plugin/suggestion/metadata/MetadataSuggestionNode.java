@@ -8,15 +8,42 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.Stack;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public abstract class MetadataSuggestionNode implements SuggestionNode {
 
     //  static MetadataSuggestionNode NULL_NODE = null;
 
+    protected static final int NODE_SHELL_BYTES = 40;
+    protected static final int STRING_OVERHEAD_BYTES = 40;
+    protected static final int COLLECTION_OVERHEAD_BYTES = 64;
+    protected static final int ENTRY_OVERHEAD_BYTES = 32;
+
+    private static final int FILE_TYPE_COUNT = FileType.values().length;
+    /**
+     * Suggestions shown below deeper ancestors are rare, lets not grow the cache for them
+     */
+    private static final int MAX_CACHED_NUM_OF_ANCESTORS = 8;
+
+    /**
+     * Key suggestions built for this node, slotted by (numOfAncestors, file type). Nodes of a published generation are
+     * replaced as a whole by the next generation, so their suggestions can be handed out again till then. Small in place
+     * updates might swap the group/property of a node though, so the suggestions are only valid for the payload they were
+     * built from. Held softly, as only the nodes of hot config files are expected to be hit repeatedly
+     */
+    @Nullable
+    private volatile SoftReference<CachedKeySuggestions> keySuggestionsRef;
+
     /**
      * If {@code matchAllSegments} is true, all {@code pathSegments} starting from {@code pathSegmentStartIndex} will be attempted to be matched. If a result is found, it will be returned. Else null
      * Else, method should attempt to match as deep as it can & return that match
@@ -38,6 +65,28 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
                 querySegmentPrefixes, querySegmentPrefixStartIndex, null);
     }
 
+    @Nullable
+    @Override
+    public SortedSet<Suggestion> findKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+                                                                  List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+                                                                  int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude) {
+        return findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe, numOfAncestors,
+                querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude, KeySearchContext.unlimited());
+    }
+
+    /**
+     * Same as {@link #findKeySuggestionsForQueryPrefix(Module, FileType, List, int, String[], int, Set)}, but stops
+     * descending into the tree once the budget of the whole search is used up
+     *
+     * @param searchContext state shared by the whole search, its budget is consumed by the suggestions found
+     * @return suggestions matching the query, at most the ones the budget allowed for (& those found alongside the last one)
+     */
+    @Nullable
+    public abstract SortedSet<Suggestion> findKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+                                                                           List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+                                                                           int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude,
+                                                                           KeySearchContext searchContext);
+
     @Nullable
     @Override
     public SortedSet<Suggestion> findValueSuggestionsForPrefix(Module module, FileType fileType,
@@ -53,16 +102,108 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
             }
             node.getBelongsTo().add(containerPath);
             node = node.getParent();
-        } while (node != null && !node.isRoot());
+        } while (node != null);
     }
 
-    public abstract Set<String> getBelongsTo();
-
     /**
+     * Counterpart of {@link #addRefCascadeTillRoot(String)}. Nodes that no longer belong to any source are detached from
+     * their parent along the way. Relies on every ancestor holding all references of its descendants, so the walk stops at
+     * the first node that does not have the reference (anymore)
+     *
      * @param containerPath Represents path to the metadata file container
-     * @return true if no children left & this item does not belong to any other source
+     * @return root of this node if it no longer belongs to any source, i.e the whole tree has to be removed. null otherwise
+     */
+    @Nullable
+    public MetadataSuggestionNode removeRefCascadeTillRoot(String containerPath) {
+        MetadataSuggestionNode node = this;
+        while (node.getBelongsTo().remove(containerPath)) {
+            MetadataNonPropertySuggestionNode parent = node.getParent();
+            if (node.getBelongsTo().isEmpty()) {
+                if (parent == null) {
+                    return node;
+                }
+                parent.removeChild(node);
+            }
+            if (parent == null) {
+                break;
+            }
+            node = parent;
+        }
+        return null;
+    }
+
+    /**
+     * Copies this node along with all its descendants. Group/property payloads are shared with the copy, whereas the state
+     * that gets mutated during indexing (children, references) is not
+     *
+     * @param parent         parent of the copy
+     * @param originalToCopy collects each copied node against its original. Expected to compare keys by identity
+     * @return copy of this node
+     */
+    public abstract MetadataSuggestionNode deepCopy(@Nullable MetadataNonPropertySuggestionNode parent,
+                                                    Map<MetadataSuggestionNode, MetadataSuggestionNode> originalToCopy);
+
+    /**
+     * Rough estimate of the heap retained by this node & its descendants (64 bit VM, compressed oops, compact strings).
+     * Group/property payloads are included, even though they might be shared with other generations of the index
+     *
+     * @return estimated size in bytes
      */
-    public abstract boolean removeRefCascadeDown(String containerPath);
+    public abstract long estimateRetainedSize();
+
+    /**
+     * @param source  group/property the suggestion is built from
+     * @param factory builds the suggestion, if this node has none cached for {@code fileType} & {@code numOfAncestors}.
+     *                Expected to always build an equivalent suggestion for the same arguments
+     * @return cached key suggestion of this node
+     */
+    protected Suggestion cachedKeySuggestion(Object source, FileType fileType, int numOfAncestors,
+                                             Supplier<Suggestion> factory) {
+        if (numOfAncestors >= MAX_CACHED_NUM_OF_ANCESTORS) {
+            return factory.get();
+        }
+
+        int slot = numOfAncestors * FILE_TYPE_COUNT + fileType.ordinal();
+        SoftReference<CachedKeySuggestions> ref = keySuggestionsRef;
+        CachedKeySuggestions cached = ref != null ? ref.get() : null;
+        Suggestion[] suggestions = cached != null && cached.source == source ? cached.suggestions : null;
+        if (suggestions != null && slot < suggestions.length && suggestions[slot] != null) {
+            return suggestions[slot];
+        }
+
+        // copy on write, concurrent searches racing here at worst build the same suggestion twice
+        Suggestion suggestion = factory.get();
+        Suggestion[] updated = suggestions == null ? new Suggestion[slot + 1]
+                : Arrays.copyOf(suggestions, Math.max(suggestions.length, slot + 1));
+        updated[slot] = suggestion;
+        keySuggestionsRef = new SoftReference<>(new CachedKeySuggestions(source, updated));
+        return suggestion;
+    }
+
+    private static final class CachedKeySuggestions {
+        private final Object source;
+        private final Suggestion[] suggestions;
+
+        private CachedKeySuggestions(Object source, Suggestion[] suggestions) {
+            this.source = source;
+            this.suggestions = suggestions;
+        }
+    }
+
+    protected static long estimateSize(@Nullable String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + value.length();
+    }
+
+    /**
+     * @return estimated size of the node shell, its names & references. Container paths themselves are shared, so only
+     * the entries are accounted for
+     */
+    protected long estimateOwnSize() {
+        return NODE_SHELL_BYTES + estimateSize(getName()) + estimateSize(getOriginalName())
+                + COLLECTION_OVERHEAD_BYTES + (long) getBelongsTo().size() * ENTRY_OVERHEAD_BYTES;
+    }
+
+    public abstract Set<String> getBelongsTo();
 
     /**
      * During reindexing lets make sure that we refresh references to proxies so that subsequent searches would be faster
@@ -103,6 +244,27 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
         return hopCount;
     }
 
+    /**
+     * @return nodes from the root till this node, both inclusive
+     */
+    public List<SuggestionNode> getNodesFromRoot() {
+        List<SuggestionNode> rootTillMe = new ArrayList<>();
+        MetadataSuggestionNode current = this;
+        do {
+            rootTillMe.add(current);
+            current = current.getParent();
+        } while (current != null);
+        Collections.reverse(rootTillMe);
+        return rootTillMe;
+    }
+
+    /**
+     * Visits this node & all its descendants along with their sanitised names
+     */
+    public void visitSubtree(BiConsumer<String, MetadataSuggestionNode> visitor) {
+        visitor.accept(getName(), this);
+    }
+
     public String getPathFromRoot() {
         Stack<String> leafTillRoot = new Stack<>();
         MetadataSuggestionNode current = this;
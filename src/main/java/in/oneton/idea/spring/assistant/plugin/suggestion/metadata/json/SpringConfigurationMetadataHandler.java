@@ -0,0 +1,16 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json;
+
+import java.io.IOException;
+
+/**
+ * Receives the entries of a metadata container one at a time, as they are read
+ */
+public interface SpringConfigurationMetadataHandler {
+
+    void onGroup(SpringConfigurationMetadataGroup group) throws IOException;
+
+    void onProperty(SpringConfigurationMetadataProperty property) throws IOException;
+
+    void onHint(SpringConfigurationMetadataHint hint) throws IOException;
+
+}
@@ -26,9 +26,11 @@ public class SpringConfigurationMetadataHint {
     @Getter
     private String name;
     @Setter
+    @Getter
     @Nullable
     private SpringConfigurationMetadataHintValue[] values;
     @Setter
+    @Getter
     @Nullable
     private SpringConfigurationMetadataValueProvider[] providers;
 
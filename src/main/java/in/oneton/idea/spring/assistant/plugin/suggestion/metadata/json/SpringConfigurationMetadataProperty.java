@@ -28,6 +28,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static com.intellij.codeInsight.documentation.DocumentationManager.createHyperlink;
@@ -63,8 +64,12 @@ public class SpringConfigurationMetadataProperty
     private String name;
     @Nullable
     @Setter
+    @Getter
     @JsonProperty("type")
     private String className;
+    /**
+     * Use {@link #getDescription()}, as the description might be deferred
+     */
     @Nullable
     @Setter
     private String description;
@@ -73,12 +78,14 @@ public class SpringConfigurationMetadataProperty
      */
     @Nullable
     @Setter
+    @Getter
     private String sourceType;
     /**
      * Specify whether the PROPERTY is deprecated. If the field is not deprecated or if that information is not known, it may be omitted. The next table offers more detail about the springConfigurationMetadataDeprecation attribute.
      */
     @Nullable
     @Setter
+    @Getter
     private SpringConfigurationMetadataDeprecation deprecation;
     /**
      * The default value, which is used if the PROPERTY is not specified. If the type of the PROPERTY is an ARRAY, it can be an ARRAY of value(s). If the default value is unknown, it may be omitted.
@@ -86,6 +93,13 @@ public class SpringConfigurationMetadataProperty
     @Nullable
     @Setter
     private Object defaultValue;
+    /**
+     * When set, description, default value & deprecation reason are not held by the property, but loaded on demand
+     */
+    @Nullable
+    @Setter
+    @JsonIgnore
+    private Supplier<SpringConfigurationMetadataPropertyDetails> deferredDetails;
 
     /**
      * Represents either the only hint associated (or) key specific hint when the property represents a map
@@ -172,18 +186,49 @@ public class SpringConfigurationMetadataProperty
         return null;
     }
 
+    @Nullable
+    public String getDescription() {
+        return this.deferredDetails != null ? this.deferredDetails.get().getDescription() : this.description;
+    }
+
+    @Nullable
+    public Object getDefaultValue() {
+        return this.deferredDetails != null ? this.deferredDetails.get().getDefaultValue() : this.defaultValue;
+    }
+
+    @Nullable
+    public String getDeprecationReason() {
+        if (this.deferredDetails != null) {
+            return this.deferredDetails.get().getDeprecationReason();
+        }
+        return this.deprecation != null ? this.deprecation.getReason() : null;
+    }
+
+    public boolean hasDeferredDetails() {
+        return this.deferredDetails != null;
+    }
+
     @NotNull
     public Suggestion buildKeySuggestion(final Module module, final FileType fileType, final List<SuggestionNode> matchesRootTillMe, final int numOfAncestors) {
 
         final Suggestion.SuggestionBuilder builder = Suggestion.builder()
                 .suggestionToDisplay(GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
-                .description(this.description)
                 .shortType(shortenedType(this.className))
-                .defaultValue(this.getDefaultValueAsStr())
                 .numOfAncestors(numOfAncestors)
                 .matchesTopFirst(matchesRootTillMe)
                 .icon(this.getSuggestionNodeType(module).getIcon());
 
+        final Supplier<SpringConfigurationMetadataPropertyDetails> detailsSupplier = this.deferredDetails;
+        if (detailsSupplier != null) {
+            // decoding the details is left to the (few) suggestions that actually get rendered
+            builder.deferredDetails(() -> {
+                final SpringConfigurationMetadataPropertyDetails details = detailsSupplier.get();
+                return new Suggestion.Details(details.getDescription(), this.toDefaultValueStr(details.getDefaultValue()));
+            });
+        } else {
+            builder.description(this.description).defaultValue(this.toDefaultValueStr(this.defaultValue));
+        }
+
         if (Objects.nonNull(this.deprecation)) {
             builder.deprecationLevel(Objects.nonNull(this.deprecation.getLevel())
                     ? this.deprecation.getLevel()
@@ -215,11 +260,12 @@ public class SpringConfigurationMetadataProperty
             builder.append(")");
         }
 
-        if (this.description != null) {
-            builder.append("<p>").append(this.description).append("</p>");
+        final String description = this.getDescription();
+        if (description != null) {
+            builder.append("<p>").append(description).append("</p>");
         }
 
-        if (this.defaultValue != null) {
+        if (this.getDefaultValue() != null) {
             builder.append("<p><em>Default value: </em>").append(this.getDefaultValueAsStr()).append("</p>");
         }
 
@@ -242,8 +288,9 @@ public class SpringConfigurationMetadataProperty
                     "ERROR: DO NOT USE THIS PROPERTY AS IT IS COMPLETELY UNSUPPORTED" :
                     "WARNING: PROPERTY IS DEPRECATED").append("</b></p>");
 
-            if (this.deprecation.getReason() != null) {
-                builder.append("@deprecated Reason: ").append(this.deprecation.getReason());
+            final String deprecationReason = this.getDeprecationReason();
+            if (deprecationReason != null) {
+                builder.append("@deprecated Reason: ").append(deprecationReason);
             }
 
             if (this.deprecation.getReplacement() != null) {
@@ -341,6 +388,32 @@ public class SpringConfigurationMetadataProperty
         return null;
     }
 
+    /**
+     * Properties are shared by consecutive generations of the index, so a hint is never attached to a property that might
+     * already be published. Class proxy is not carried over, it is rebuilt on first access
+     *
+     * @param hint hint to attach, either to the value or to the key/property as a whole
+     * @return copy of this property, with the hint attached
+     */
+    public SpringConfigurationMetadataProperty withHint(final SpringConfigurationMetadataHint hint) {
+        final SpringConfigurationMetadataProperty copy = new SpringConfigurationMetadataProperty();
+        copy.name = this.name;
+        copy.className = this.className;
+        copy.description = this.description;
+        copy.sourceType = this.sourceType;
+        copy.deprecation = this.deprecation;
+        copy.defaultValue = this.defaultValue;
+        copy.deferredDetails = this.deferredDetails;
+        copy.genericOrKeyHint = this.genericOrKeyHint;
+        copy.valueHint = this.valueHint;
+        if (hint.representsValueOfMap()) {
+            copy.setValueHint(hint);
+        } else {
+            copy.setGenericOrKeyHint(hint);
+        }
+        return copy;
+    }
+
     public void setGenericOrKeyHint(final SpringConfigurationMetadataHint genericOrKeyHint) {
         this.genericOrKeyHint = genericOrKeyHint;
         this.updateNodeType();
@@ -425,20 +498,25 @@ public class SpringConfigurationMetadataProperty
     }
 
     private String getDefaultValueAsStr() {
-        if (this.defaultValue != null && !(this.defaultValue instanceof Array)
-                && !(this.defaultValue instanceof Collection)) {
-            if (this.className != null && this.defaultValue instanceof Double) {
+        return this.toDefaultValueStr(this.getDefaultValue());
+    }
+
+    @Nullable
+    private String toDefaultValueStr(@Nullable final Object defaultValue) {
+        if (defaultValue != null && !(defaultValue instanceof Array)
+                && !(defaultValue instanceof Collection)) {
+            if (this.className != null && defaultValue instanceof Double) {
                 // if defaultValue is a number, its being parsed by gson as double & we will see an incorrect fraction when we take toString()
                 switch (this.className) {
                     case "java.lang.Integer":
-                        return Integer.toString(((Double) this.defaultValue).intValue());
+                        return Integer.toString(((Double) defaultValue).intValue());
                     case "java.lang.Byte":
-                        return Byte.toString(((Double) this.defaultValue).byteValue());
+                        return Byte.toString(((Double) defaultValue).byteValue());
                     case "java.lang.Short":
-                        return Short.toString(((Double) this.defaultValue).shortValue());
+                        return Short.toString(((Double) defaultValue).shortValue());
                 }
             }
-            return this.defaultValue.toString();
+            return defaultValue.toString();
         }
         return null;
     }
@@ -0,0 +1,21 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json;
+
+import lombok.Value;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bulky text of a {@link SpringConfigurationMetadataProperty} that is only needed for rendering & documentation, so that
+ * it can be kept out of the index & loaded on demand
+ */
+@Value
+public class SpringConfigurationMetadataPropertyDetails {
+
+    @Nullable
+    String description;
+    @Nullable
+    Object defaultValue;
+    @Nullable
+    String deprecationReason;
+
+}
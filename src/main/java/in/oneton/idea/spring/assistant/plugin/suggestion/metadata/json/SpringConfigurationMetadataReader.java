@@ -0,0 +1,75 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import in.oneton.idea.spring.assistant.plugin.initializr.misc.JsonUtil;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Token level reader of `spring-configuration-metadata.json`.
+ * <p>
+ * Unlike binding the whole file to {@link SpringConfigurationMetadata}, entries are bound one at a time & handed over
+ * to the {@link SpringConfigurationMetadataHandler} right away, so the lists of groups/properties/hints of large
+ * containers are never held in memory
+ */
+@UtilityClass
+public class SpringConfigurationMetadataReader {
+
+    private static final String GROUPS = "groups";
+    private static final String PROPERTIES = "properties";
+    private static final String HINTS = "hints";
+
+    public static void read(final InputStream inputStream, final SpringConfigurationMetadataHandler handler) throws IOException {
+        final ObjectMapper objectMapper = JsonUtil.getOBJECT_MAPPER();
+        try (final JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected metadata to be a json object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (fieldName) {
+                    case GROUPS:
+                        readEntries(objectMapper, parser, SpringConfigurationMetadataGroup.class, handler::onGroup);
+                        break;
+                    case PROPERTIES:
+                        readEntries(objectMapper, parser, SpringConfigurationMetadataProperty.class, handler::onProperty);
+                        break;
+                    case HINTS:
+                        readEntries(objectMapper, parser, SpringConfigurationMetadataHint.class, handler::onHint);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static <T> void readEntries(final ObjectMapper objectMapper, final JsonParser parser, final Class<T> entryType,
+                                        final EntryConsumer<T> consumer) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, entryType));
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            // single entry instead of an array, which the object mapper accepts as well
+            consumer.accept(objectMapper.readValue(parser, entryType));
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryConsumer<T> {
+        void accept(T entry) throws IOException;
+    }
+
+}
@@ -0,0 +1,57 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot;
+
+import com.intellij.util.containers.SLRUMap;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataPropertyDetails;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Location of the details of a property within the payload of its container. Details are decoded on demand, & only the
+ * recently used ones are kept around, as they are only needed while rendering lookup items & documentation.
+ * <p>
+ * Holds on to the payload, which is shared with the container & the other properties of it anyway
+ */
+class DeferredPropertyDetails implements Supplier<SpringConfigurationMetadataPropertyDetails> {
+
+    private static final int CACHE_SIZE = 512;
+    /**
+     * Keyed by identity, guarded by itself
+     */
+    private static final SLRUMap<DeferredPropertyDetails, SpringConfigurationMetadataPropertyDetails> recentlyUsed =
+            new SLRUMap<>(CACHE_SIZE, CACHE_SIZE);
+
+    private final byte[] payload;
+    private final int offset;
+    private final int length;
+
+    DeferredPropertyDetails(final byte[] payload, final int offset, final int length) {
+        this.payload = payload;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public SpringConfigurationMetadataPropertyDetails get() {
+        synchronized (recentlyUsed) {
+            final SpringConfigurationMetadataPropertyDetails details = recentlyUsed.get(this);
+            if (details != null) {
+                return details;
+            }
+        }
+
+        final SpringConfigurationMetadataPropertyDetails details;
+        try {
+            details = MetadataSnapshotCodec.decodePropertyDetails(this.payload, this.offset, this.length);
+        } catch (final IOException e) {
+            // payload is held in memory & was already decoded once, so this is a bug rather than an io problem
+            throw new IllegalStateException("Unable to decode property details at offset " + this.offset, e);
+        }
+
+        synchronized (recentlyUsed) {
+            recentlyUsed.put(this, details);
+        }
+        return details;
+    }
+
+}
@@ -0,0 +1,291 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot;
+
+import com.intellij.openapi.util.io.IOUtil;
+import in.oneton.idea.spring.assistant.plugin.initializr.misc.JsonUtil;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataStringPool;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecation;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataDeprecationLevel;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataGroup;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHandler;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHintValue;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataPropertyDetails;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProvider;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderParams;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataValueProviderType;
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact binary form of the entries of a metadata container.
+ * <p>
+ * The payload is a flat sequence of tagged records (group/property/hint) terminated by {@link #TAG_END}, so that it can be
+ * written & read without knowing the number of entries upfront. Free form values ({@code defaultValue} & hint values) are
+ * kept as json text, so that they deserialize to exactly the same java types as the original metadata file would.
+ * <p>
+ * The bulky text of a property (description, default value & deprecation reason) is written as a length prefixed block,
+ * which the decoder skips & only records the offset of. See {@link DeferredPropertyDetails}
+ * <p>
+ * Any change to the layout must be accompanied by a bump of {@link MetadataSnapshotStore#FORMAT_VERSION}
+ */
+@UtilityClass
+public class MetadataSnapshotCodec {
+
+    static final byte TAG_END = 0;
+    static final byte TAG_GROUP = 1;
+    static final byte TAG_PROPERTY = 2;
+    static final byte TAG_HINT = 3;
+
+    /**
+     * Streams all entries of the payload to {@code handler}. As laid out by {@link Encoder}, groups are always emitted
+     * first, then properties & finally hints, as a hint can only be attached to an already known property.
+     * <p>
+     * Strings that the index retains are taken from {@code stringPool}, so that repeated names, types & descriptions are
+     * held only once
+     */
+    public static void decode(final byte[] payload, final MetadataStringPool stringPool,
+                              final SpringConfigurationMetadataHandler handler) throws IOException {
+        final ByteArrayInputStream payloadIn = new ByteArrayInputStream(payload);
+        try (final DataInputStream in = new DataInputStream(payloadIn)) {
+            byte tag;
+            while ((tag = in.readByte()) != TAG_END) {
+                switch (tag) {
+                    case TAG_GROUP:
+                        handler.onGroup(readGroup(in, stringPool));
+                        break;
+                    case TAG_PROPERTY:
+                        handler.onProperty(readProperty(in, payload, payloadIn, stringPool));
+                        break;
+                    case TAG_HINT:
+                        handler.onHint(readHint(in, stringPool));
+                        break;
+                    default:
+                        throw new IOException("Unexpected record tag " + tag + " in metadata snapshot");
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes entries as they are received. Each kind of entry is buffered in its own section, so that the payload
+     * always lists groups, then properties, then hints
+     */
+    public static class Encoder implements SpringConfigurationMetadataHandler {
+
+        private final ByteArrayOutputStream groups = new ByteArrayOutputStream(1024);
+        private final ByteArrayOutputStream properties = new ByteArrayOutputStream(16 * 1024);
+        private final ByteArrayOutputStream hints = new ByteArrayOutputStream(1024);
+        private final DataOutputStream groupsOut = new DataOutputStream(this.groups);
+        private final DataOutputStream propertiesOut = new DataOutputStream(this.properties);
+        private final DataOutputStream hintsOut = new DataOutputStream(this.hints);
+
+        @Override
+        public void onGroup(final SpringConfigurationMetadataGroup group) throws IOException {
+            this.groupsOut.writeByte(TAG_GROUP);
+            writeGroup(this.groupsOut, group);
+        }
+
+        @Override
+        public void onProperty(final SpringConfigurationMetadataProperty property) throws IOException {
+            this.propertiesOut.writeByte(TAG_PROPERTY);
+            writeProperty(this.propertiesOut, property);
+        }
+
+        @Override
+        public void onHint(final SpringConfigurationMetadataHint hint) throws IOException {
+            this.hintsOut.writeByte(TAG_HINT);
+            writeHint(this.hintsOut, hint);
+        }
+
+        public byte[] toByteArray() {
+            final byte[] payload = new byte[this.groups.size() + this.properties.size() + this.hints.size() + 1];
+            int offset = copy(this.groups, payload, 0);
+            offset = copy(this.properties, payload, offset);
+            offset = copy(this.hints, payload, offset);
+            payload[offset] = TAG_END;
+            return payload;
+        }
+
+        private static int copy(final ByteArrayOutputStream section, final byte[] target, final int offset) {
+            final byte[] bytes = section.toByteArray();
+            System.arraycopy(bytes, 0, target, offset, bytes.length);
+            return offset + bytes.length;
+        }
+
+    }
+
+    private static void writeGroup(final DataOutput out, final SpringConfigurationMetadataGroup group) throws IOException {
+        IOUtil.writeUTF(out, group.getName());
+        writeNullableString(out, group.getClassName());
+        writeNullableString(out, group.getDescription());
+        writeNullableString(out, group.getSourceType());
+        writeNullableString(out, group.getSourceMethod());
+    }
+
+    private static SpringConfigurationMetadataGroup readGroup(final DataInput in, final MetadataStringPool stringPool) throws IOException {
+        final SpringConfigurationMetadataGroup group = new SpringConfigurationMetadataGroup();
+        group.setName(stringPool.intern(IOUtil.readUTF(in)));
+        group.setClassName(stringPool.intern(readNullableString(in)));
+        group.setDescription(stringPool.intern(readNullableString(in)));
+        group.setSourceType(stringPool.intern(readNullableString(in)));
+        group.setSourceMethod(stringPool.intern(readNullableString(in)));
+        return group;
+    }
+
+    private static void writeProperty(final DataOutput out, final SpringConfigurationMetadataProperty property) throws IOException {
+        IOUtil.writeUTF(out, property.getName());
+        writeNullableString(out, property.getClassName());
+        writeNullableString(out, property.getSourceType());
+
+        final SpringConfigurationMetadataDeprecation deprecation = property.getDeprecation();
+        out.writeBoolean(deprecation != null);
+        if (deprecation != null) {
+            writeNullableString(out, deprecation.getLevel() != null ? deprecation.getLevel().name() : null);
+            writeNullableString(out, deprecation.getReplacement());
+        }
+
+        final ByteArrayOutputStream details = new ByteArrayOutputStream(256);
+        final DataOutputStream detailsOut = new DataOutputStream(details);
+        writeNullableString(detailsOut, property.getDescription());
+        writeNullableValue(detailsOut, property.getDefaultValue());
+        writeNullableString(detailsOut, property.getDeprecationReason());
+        detailsOut.flush();
+        out.writeInt(details.size());
+        out.write(details.toByteArray());
+    }
+
+    /**
+     * @param payload   payload being decoded
+     * @param payloadIn stream {@code in} reads from, tells the position within the payload
+     */
+    private static SpringConfigurationMetadataProperty readProperty(final DataInput in, final byte[] payload,
+                                                                    final ByteArrayInputStream payloadIn,
+                                                                    final MetadataStringPool stringPool) throws IOException {
+        final SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+        property.setName(stringPool.intern(IOUtil.readUTF(in)));
+        property.setClassName(stringPool.intern(readNullableString(in)));
+        property.setSourceType(stringPool.intern(readNullableString(in)));
+
+        if (in.readBoolean()) {
+            final SpringConfigurationMetadataDeprecation deprecation = new SpringConfigurationMetadataDeprecation();
+            final String level = readNullableString(in);
+            deprecation.setLevel(level != null ? SpringConfigurationMetadataDeprecationLevel.valueOf(level) : null);
+            deprecation.setReplacement(stringPool.intern(readNullableString(in)));
+            property.setDeprecation(deprecation);
+        }
+
+        final int detailsLength = in.readInt();
+        final int detailsOffset = payload.length - payloadIn.available();
+        property.setDeferredDetails(new DeferredPropertyDetails(payload, detailsOffset, detailsLength));
+        in.skipBytes(detailsLength);
+        return property;
+    }
+
+    /**
+     * Reads the block written by {@link #writeProperty(DataOutput, SpringConfigurationMetadataProperty)} for the
+     * description, default value & deprecation reason of a property
+     */
+    static SpringConfigurationMetadataPropertyDetails decodePropertyDetails(final byte[] payload, final int offset, final int length)
+            throws IOException {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, offset, length))) {
+            return new SpringConfigurationMetadataPropertyDetails(readNullableString(in), readNullableValue(in), readNullableString(in));
+        }
+    }
+
+    private static void writeHint(final DataOutput out, final SpringConfigurationMetadataHint hint) throws IOException {
+        IOUtil.writeUTF(out, hint.getName());
+
+        final SpringConfigurationMetadataHintValue[] values = hint.getValues();
+        out.writeInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (final SpringConfigurationMetadataHintValue value : values) {
+                writeNullableValue(out, value.getNameAsObjOrArray());
+                writeNullableString(out, value.getDescription());
+            }
+        }
+
+        final SpringConfigurationMetadataValueProvider[] providers = hint.getProviders();
+        out.writeInt(providers != null ? providers.length : -1);
+        if (providers != null) {
+            for (final SpringConfigurationMetadataValueProvider provider : providers) {
+                writeNullableString(out, provider.getType() != null ? provider.getType().name() : null);
+
+                final SpringConfigurationMetadataValueProviderParams parameters = provider.getParameters();
+                out.writeBoolean(parameters != null);
+                if (parameters != null) {
+                    writeNullableString(out, parameters.getTarget());
+                    out.writeBoolean(parameters.isConcrete());
+                }
+            }
+        }
+    }
+
+    private static SpringConfigurationMetadataHint readHint(final DataInput in, final MetadataStringPool stringPool) throws IOException {
+        final SpringConfigurationMetadataHint hint = new SpringConfigurationMetadataHint();
+        hint.setName(stringPool.intern(IOUtil.readUTF(in)));
+
+        final int numOfValues = in.readInt();
+        if (numOfValues >= 0) {
+            final SpringConfigurationMetadataHintValue[] values = new SpringConfigurationMetadataHintValue[numOfValues];
+            for (int i = 0; i < numOfValues; i++) {
+                values[i] = SpringConfigurationMetadataHintValue.builder()
+                        .nameAsObjOrArray(readNullableValue(in))
+                        .description(stringPool.intern(readNullableString(in)))
+                        .build();
+            }
+            hint.setValues(values);
+        }
+
+        final int numOfProviders = in.readInt();
+        if (numOfProviders >= 0) {
+            final SpringConfigurationMetadataValueProvider[] providers = new SpringConfigurationMetadataValueProvider[numOfProviders];
+            for (int i = 0; i < numOfProviders; i++) {
+                final SpringConfigurationMetadataValueProvider provider = new SpringConfigurationMetadataValueProvider();
+                final String type = readNullableString(in);
+                provider.setType(type != null ? SpringConfigurationMetadataValueProviderType.valueOf(type) : null);
+
+                if (in.readBoolean()) {
+                    final SpringConfigurationMetadataValueProviderParams parameters = new SpringConfigurationMetadataValueProviderParams();
+                    parameters.setTarget(stringPool.intern(readNullableString(in)));
+                    parameters.setConcrete(in.readBoolean());
+                    provider.setParameters(parameters);
+                }
+                providers[i] = provider;
+            }
+            hint.setProviders(providers);
+        }
+        return hint;
+    }
+
+    private static void writeNullableString(final DataOutput out, @Nullable final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            IOUtil.writeUTF(out, value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(final DataInput in) throws IOException {
+        return in.readBoolean() ? IOUtil.readUTF(in) : null;
+    }
+
+    private static void writeNullableValue(final DataOutput out, @Nullable final Object value) throws IOException {
+        writeNullableString(out, value != null ? JsonUtil.toJson(value) : null);
+    }
+
+    @Nullable
+    private static Object readNullableValue(final DataInput in) throws IOException {
+        final String json = readNullableString(in);
+        return json != null ? JsonUtil.fromJson(json, Object.class) : null;
+    }
+
+}
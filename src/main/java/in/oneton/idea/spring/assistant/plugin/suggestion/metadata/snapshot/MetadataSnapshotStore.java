@@ -0,0 +1,157 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot;
+
+import com.github.eltonsandre.plugin.idea.spring.assistant.common.LogUtil;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.IOUtil;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
+import lombok.experimental.UtilityClass;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Persists the parsed metadata of each container under the IDE system directory, so that a restart does not have to
+ * read & parse every metadata file on the classpath again.
+ * <p>
+ * An entry is only reused when both {@link MetadataContainerInfo#getContainerArchiveOrFileRef()} &
+ * {@link MetadataContainerInfo#getMarker()} match what was recorded when the entry was written, i.e only containers whose
+ * marker changed since the last run get parsed again. Entries are shared by all modules & projects, as the same archive
+ * usually appears on the classpath of many modules
+ */
+@UtilityClass
+public class MetadataSnapshotStore {
+
+    private static final Logger log = Logger.getInstance(MetadataSnapshotStore.class);
+
+    private static final int MAGIC = 0x53505341;
+    /**
+     * Bump whenever the layout of the header or {@link MetadataSnapshotCodec} payload changes
+     */
+    static final int FORMAT_VERSION = 3;
+
+    /**
+     * Entries not read for this long are assumed to belong to archives that are no longer part of any classpath
+     */
+    private static final Duration STALE_ENTRY_TTL = Duration.ofDays(30);
+
+    private static final AtomicBoolean staleEntriesPruned = new AtomicBoolean();
+
+    /**
+     * @param containerInfo container whose snapshot is requested
+     * @return payload previously written by {@link #save(MetadataContainerInfo, byte[])} for the same container & marker, null otherwise
+     */
+    @Nullable
+    public static byte[] load(final MetadataContainerInfo containerInfo) {
+        pruneStaleEntriesIfRequired();
+
+        final Path snapshotFile = toSnapshotFile(containerInfo);
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !containerInfo.getContainerArchiveOrFileRef().equals(IOUtil.readUTF(in))
+                    || in.readLong() != containerInfo.getMarker()) {
+                LogUtil.debug(() -> log.debug("Ignoring outdated metadata snapshot for " + containerInfo));
+                return null;
+            }
+
+            final byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            Files.setLastModifiedTime(snapshotFile, FileTime.from(Instant.now()));
+            return payload;
+        } catch (final IOException e) {
+            log.warn("Unable to read metadata snapshot " + snapshotFile + ". Container will be parsed again", e);
+            invalidate(containerInfo);
+            return null;
+        }
+    }
+
+    public static void save(final MetadataContainerInfo containerInfo, final byte[] payload) {
+        final Path snapshotFile = toSnapshotFile(containerInfo);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            // Multiple modules can index the same container concurrently, so lets never expose a partially written file
+            tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                IOUtil.writeUTF(out, containerInfo.getContainerArchiveOrFileRef());
+                out.writeLong(containerInfo.getMarker());
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+            Files.move(tempFile, snapshotFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final IOException e) {
+            log.warn("Unable to write metadata snapshot " + snapshotFile, e);
+        } finally {
+            if (tempFile != null) {
+                FileUtil.delete(tempFile.toFile());
+            }
+        }
+    }
+
+    public static void invalidate(final MetadataContainerInfo containerInfo) {
+        try {
+            Files.deleteIfExists(toSnapshotFile(containerInfo));
+        } catch (final IOException e) {
+            LogUtil.debug(() -> log.debug("Unable to delete metadata snapshot for " + containerInfo, e));
+        }
+    }
+
+    private static Path toSnapshotFile(final MetadataContainerInfo containerInfo) {
+        // Collisions are harmless, as the full ref is verified against the header when the entry is read
+        final String ref = containerInfo.getContainerArchiveOrFileRef();
+        return getSnapshotDir().resolve(Integer.toHexString(ref.hashCode()) + "-" + Integer.toHexString(ref.length()) + ".bin");
+    }
+
+    private static Path getSnapshotDir() {
+        return Paths.get(PathManager.getSystemPath(), "spring-assistant", "metadata-snapshots");
+    }
+
+    private static void pruneStaleEntriesIfRequired() {
+        if (!staleEntriesPruned.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Path snapshotDir = getSnapshotDir();
+        if (!Files.isDirectory(snapshotDir)) {
+            return;
+        }
+
+        final Instant threshold = Instant.now().minus(STALE_ENTRY_TTL);
+        try (final Stream<Path> entries = Files.list(snapshotDir)) {
+            entries.forEach(entry -> {
+                try {
+                    if (Files.getLastModifiedTime(entry).toInstant().isBefore(threshold)) {
+                        Files.deleteIfExists(entry);
+                    }
+                } catch (final IOException e) {
+                    LogUtil.debug(() -> log.debug("Unable to prune metadata snapshot " + entry, e));
+                }
+            });
+        } catch (final IOException e) {
+            LogUtil.debug(() -> log.debug("Unable to prune metadata snapshots", e));
+        }
+    }
+
+}
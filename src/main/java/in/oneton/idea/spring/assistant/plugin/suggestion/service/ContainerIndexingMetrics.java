@@ -0,0 +1,31 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Indexing statistics of a single metadata container within a module
+ */
+@Value
+@Builder
+public class ContainerIndexingMetrics {
+
+    String containerPath;
+    /**
+     * Size of the metadata file, or of the snapshot if the container was loaded from one
+     */
+    long bytesRead;
+    boolean loadedFromSnapshot;
+    /**
+     * Time taken to read & parse the container. As containers are shared, this is only spent by the first module that loads it
+     */
+    long parseTimeMillis;
+    /**
+     * Time taken to merge the container into the index of the module
+     */
+    long buildTimeMillis;
+    int groups;
+    int properties;
+    int hints;
+
+}
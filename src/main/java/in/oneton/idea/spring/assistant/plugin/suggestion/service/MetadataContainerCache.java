@@ -0,0 +1,50 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Application wide, reference counted cache of parsed metadata containers.
+ * <p>
+ * The same archive (for e.g. `spring-boot-autoconfigure.jar`) is usually on the classpath of every module of a project,
+ * & all of them get indexed at the same time on project open. Instead of each module reading & parsing it, modules
+ * acquire the parsed form from here, replay it into their own index & release it again. A container is evicted once the
+ * last module that acquired it releases it, so a module indexing it later loads it again (from the on-disk snapshot).
+ * This saves the repeated reads & parses, not memory: each module still holds its own index
+ */
+public interface MetadataContainerCache {
+
+    static MetadataContainerCache getInstance() {
+        return ApplicationManager.getApplication().getService(MetadataContainerCache.class);
+    }
+
+    /**
+     * Each successful call must be paired with a {@link #release(SharedMetadataContainer)}
+     *
+     * @param containerInfo container (with metadata file) to acquire
+     * @return shared parsed form of the container
+     * @throws IOException if the container could not be read/parsed
+     */
+    SharedMetadataContainer acquire(MetadataContainerInfo containerInfo) throws IOException;
+
+    /**
+     * Acquires all the given containers, loading the ones that are not cached yet in parallel on a bounded pool.
+     * Each successfully completed acquisition must be paired with a {@link #release(SharedMetadataContainer)}
+     *
+     * @param containerInfos containers (with metadata file) to acquire
+     * @return acquisitions, in the same order as {@code containerInfos}
+     */
+    List<CompletableFuture<SharedMetadataContainer>> acquireAll(List<MetadataContainerInfo> containerInfos);
+
+    void release(SharedMetadataContainer container);
+
+    /**
+     * @return number of distinct containers currently being merged by some module
+     */
+    int size();
+
+}
@@ -0,0 +1,140 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.github.eltonsandre.plugin.idea.spring.assistant.common.LogUtil;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import gnu.trove.THashMap;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataReader;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot.MetadataSnapshotCodec;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot.MetadataSnapshotStore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+public class MetadataContainerCacheImpl implements MetadataContainerCache, Disposable {
+
+    private static final Logger log = Logger.getInstance(MetadataContainerCacheImpl.class);
+
+    /**
+     * Reading & parsing of a container is independent of every other container, so lets spread it over the available cores.
+     * Backed by the shared application pool & owned by this service, so that no thread outlives the plugin once it gets unloaded
+     */
+    private final ExecutorService loaderExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "Spring Assistant Metadata Loader", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Keyed by container ref & marker, so that a module still holding an older version of a container never releases the newer one
+     */
+    private final Map<String, SharedMetadataContainer> keyToContainer = new THashMap<>();
+
+    @Override
+    public SharedMetadataContainer acquire(final MetadataContainerInfo containerInfo) throws IOException {
+        final SharedMetadataContainer container;
+        synchronized (this.keyToContainer) {
+            container = this.keyToContainer.computeIfAbsent(toKey(containerInfo), key -> new SharedMetadataContainer(containerInfo));
+            container.refCount++;
+        }
+
+        // Load outside of the cache wide lock, so that distinct containers can be loaded in parallel. Concurrent
+        // requests for the same container wait for the first one to finish
+        try {
+            synchronized (container) {
+                if (!container.isLoaded()) {
+                    load(container);
+                }
+            }
+            return container;
+        } catch (final IOException | RuntimeException e) {
+            this.release(container);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<CompletableFuture<SharedMetadataContainer>> acquireAll(final List<MetadataContainerInfo> containerInfos) {
+        return containerInfos.stream()
+                .map(containerInfo -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return this.acquire(containerInfo);
+                    } catch (final IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, this.loaderExecutor))
+                .collect(toList());
+    }
+
+    @Override
+    public void release(final SharedMetadataContainer container) {
+        synchronized (this.keyToContainer) {
+            if (--container.refCount <= 0) {
+                final String key = toKey(container.getContainerInfo());
+                if (this.keyToContainer.get(key) == container) {
+                    this.keyToContainer.remove(key);
+                    LogUtil.debug(() -> log.debug("Evicted shared container " + container));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (this.keyToContainer) {
+            return this.keyToContainer.size();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // pending loads are abandoned, their acquisitions never complete, which is fine as the modules waiting on them are
+        // disposed along with the plugin
+        this.loaderExecutor.shutdownNow();
+        synchronized (this.keyToContainer) {
+            this.keyToContainer.clear();
+        }
+    }
+
+    private static String toKey(final MetadataContainerInfo containerInfo) {
+        return containerInfo.getContainerArchiveOrFileRef() + '@' + containerInfo.getMarker();
+    }
+
+    /**
+     * Reuses the persisted snapshot of the container if its marker is unchanged since the snapshot was written,
+     * else parses the metadata file & refreshes the snapshot
+     */
+    private static void load(final SharedMetadataContainer container) throws IOException {
+        final MetadataContainerInfo containerInfo = container.getContainerInfo();
+        final long startedAt = System.nanoTime();
+
+        final byte[] snapshot = MetadataSnapshotStore.load(containerInfo);
+        if (snapshot != null) {
+            LogUtil.debug(() -> log.debug("Loaded metadata snapshot for " + containerInfo));
+            container.setPayload(snapshot, snapshot.length, elapsedMillis(startedAt), true);
+            return;
+        }
+
+        final VirtualFile metadataFile = containerInfo.getMetadataFile();
+        final MetadataSnapshotCodec.Encoder encoder = new MetadataSnapshotCodec.Encoder();
+        try (final var inputStream = metadataFile.getInputStream()) {
+            SpringConfigurationMetadataReader.read(inputStream, encoder);
+        }
+
+        final byte[] payload = encoder.toByteArray();
+        container.setPayload(payload, metadataFile.getLength(), elapsedMillis(startedAt), false);
+        MetadataSnapshotStore.save(containerInfo, payload);
+    }
+
+    private static long elapsedMillis(final long startedAtNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+    }
+
+}
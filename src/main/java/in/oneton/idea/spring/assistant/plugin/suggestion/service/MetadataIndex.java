@@ -0,0 +1,351 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import gnu.trove.THashMap;
+import in.oneton.idea.spring.assistant.plugin.misc.PropertyKeyTokenizer;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataStringPool;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataSuggestionNode;
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+import javax.annotation.Nullable;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode.sanitise;
+
+/**
+ * A single generation of the search index of a module.
+ * <p>
+ * A generation is mostly mutated by the indexer that builds it. Each reindex starts from a {@link #newGeneration()} copy
+ * of the published generation & replaces it as a whole once done. Copying the whole tree for a single small container
+ * (for e.g a project's own additional metadata being edited) is wasteful though, so such changes are applied to the
+ * published generation in place via {@link #updateInPlace(Supplier)}.
+ * <p>
+ * Readers go through {@link #read(Function)}, which runs optimistically without locking & only falls back to a read lock
+ * if an in place update came in while it was running. In place updates are rare & short, so readers almost never wait.
+ * <p>
+ * For a reader to safely walk the tree while it is updated, the structures searches walk are never modified once
+ * published, i.e the root trie & the children of each node. An in place update builds replacements for the ones it
+ * touches & swaps them in (see {@link #putRoot(String, MetadataSuggestionNode)} & MetadataChildNodes). A racing reader
+ * might still see a mix of old & new nodes, which its validation catches. Container references of the nodes &
+ * {@link #containerPathToContributedNodes} are modified in place, as they are only read by the indexer
+ */
+@ToString(of = {"generation"})
+public class MetadataIndex {
+
+    static final MetadataIndex EMPTY = new MetadataIndex(0, new PatriciaTrie<>(), new THashMap<>(), null);
+
+    @Getter
+    private final long generation;
+    /**
+     * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hyphens, underscores, e.t.c in the keys themselves
+     */
+    @Getter
+    private volatile Trie<String, MetadataSuggestionNode> rootSearchIndex;
+    /**
+     * Container path -> deepest nodes each of its entries got assigned to. Lets us remove a container by only visiting the
+     * nodes it contributed (& their ancestors) instead of the whole index
+     */
+    private final Map<String, List<MetadataSuggestionNode>> containerPathToContributedNodes;
+    /**
+     * Shared by consecutive generations of a module, as they share most of their strings. Only used by the indexer,
+     * {@link #EMPTY} has none, as it is shared by all modules
+     */
+    @Nullable
+    private final MetadataStringPool stringPool;
+    /**
+     * Sanitised name of every node -> nodes with that name, regardless of depth. Lets searches that do not match any root
+     * go straight to the nodes matching mid path. Only built once such a search comes in & held softly, as it can always
+     * be rebuilt from the published generation
+     */
+    @Nullable
+    private volatile SoftReference<VersionedIndex<Trie<String, List<MetadataSuggestionNode>>>> segmentIndexRef;
+    /**
+     * Canonical key (see {@link PropertyKeyTokenizer#toCanonicalKey(CharSequence)}) of every node -> node. Lets any relaxed
+     * form of a key be resolved with a single lookup instead of walking the tree segment by segment. Built & held the same
+     * way as {@link #segmentIndexRef}
+     */
+    @Nullable
+    private volatile SoftReference<VersionedIndex<Map<String, MetadataSuggestionNode>>> canonicalKeyIndexRef;
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Whether an in place update is running, in which case the root trie must be replaced rather than modified. Only
+     * accessed by the indexer, under the write lock
+     */
+    private boolean updatingInPlace;
+    /**
+     * Number of in place updates applied to this generation. Lazily built indexes are only valid for the count they were
+     * built at
+     */
+    @Getter
+    private volatile int modificationCount;
+
+    private MetadataIndex(final long generation, final Trie<String, MetadataSuggestionNode> rootSearchIndex,
+                          final Map<String, List<MetadataSuggestionNode>> containerPathToContributedNodes,
+                          @Nullable final MetadataStringPool stringPool) {
+        this.generation = generation;
+        this.rootSearchIndex = rootSearchIndex;
+        this.containerPathToContributedNodes = containerPathToContributedNodes;
+        this.stringPool = stringPool;
+    }
+
+    MetadataIndex newGeneration() {
+        return this.newGeneration(false);
+    }
+
+    /**
+     * Copies the node hierarchy of this generation, so that the copy can be modified while this generation is still in use.
+     * Group/property payloads are shared between the generations
+     *
+     * @param resetStringPool whether the next generation should start with an empty string pool. The pool only ever grows,
+     *                        so strings of removed containers would stay reachable otherwise
+     * @return next generation, with the same content as this one
+     */
+    MetadataIndex newGeneration(final boolean resetStringPool) {
+        final Map<MetadataSuggestionNode, MetadataSuggestionNode> originalToCopy = new IdentityHashMap<>();
+
+        final Trie<String, MetadataSuggestionNode> rootSearchIndexCopy = new PatriciaTrie<>();
+        this.rootSearchIndex.forEach((rootName, root) -> rootSearchIndexCopy.put(rootName, root.deepCopy(null, originalToCopy)));
+
+        final Map<String, List<MetadataSuggestionNode>> containerPathToContributedNodesCopy = new THashMap<>(this.containerPathToContributedNodes.size());
+        this.containerPathToContributedNodes.forEach((containerPath, contributedNodes) -> {
+            final List<MetadataSuggestionNode> contributedNodesCopy = new ArrayList<>(contributedNodes.size());
+            for (final MetadataSuggestionNode contributedNode : contributedNodes) {
+                final MetadataSuggestionNode copy = originalToCopy.get(contributedNode);
+                // nodes detached from the tree (for e.g replaced by a newer node with the same name) are not carried over
+                if (copy != null) {
+                    contributedNodesCopy.add(copy);
+                }
+            }
+            containerPathToContributedNodesCopy.put(containerPath, contributedNodesCopy);
+        });
+
+        final MetadataStringPool nextStringPool = this.stringPool == null || resetStringPool ? new MetadataStringPool() : this.stringPool;
+        return new MetadataIndex(this.generation + 1, rootSearchIndexCopy, containerPathToContributedNodesCopy, nextStringPool);
+    }
+
+    /**
+     * @return pool the strings of this generation are to be taken from. Must only be used while building the generation
+     */
+    MetadataStringPool getStringPool() {
+        if (this.stringPool == null) {
+            throw new IllegalStateException("Index " + this + " is not meant to be built upon");
+        }
+        return this.stringPool;
+    }
+
+    /**
+     * @return rough estimate of the heap saved by pooling the strings of this generation
+     */
+    public long getStringPoolBytesSaved() {
+        return this.stringPool != null ? this.stringPool.getBytesSaved() : 0;
+    }
+
+    /**
+     * Runs the reader against this generation, isolated from in place updates. The reader first runs without locking & is
+     * run again under a read lock if an update came in meanwhile, so it must be free of side effects & only its result
+     * must be used. Must not call back into {@link #read(Function)}, as a nested read might wait for a pending update,
+     * which waits for the outer read
+     *
+     * @return result of the reader
+     */
+    public <T> T read(final Function<MetadataIndex, T> reader) {
+        final long optimisticStamp = this.lock.tryOptimisticRead();
+        if (optimisticStamp != 0) {
+            try {
+                final T result = reader.apply(this);
+                if (this.lock.validate(optimisticStamp)) {
+                    return result;
+                }
+            } catch (final ProcessCanceledException e) {
+                throw e;
+            } catch (final RuntimeException | AssertionError e) {
+                // a reader that raced an update might have tripped over the mix of old & new nodes
+                if (this.lock.validate(optimisticStamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        final long stamp = this.lock.readLock();
+        try {
+            return reader.apply(this);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Applies an update to this (possibly published) generation. Must be short, as readers that got invalidated by it wait
+     * till it is done
+     *
+     * @return result of the update
+     */
+    <T> T updateInPlace(final Supplier<T> update) {
+        final long stamp = this.lock.writeLock();
+        this.updatingInPlace = true;
+        try {
+            return update.get();
+        } finally {
+            this.updatingInPlace = false;
+            // even a failed update might have modified a part of the index
+            this.modificationCount++;
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds/replaces a root. Within an in place update, the root trie is replaced, as readers might be walking it
+     */
+    void putRoot(final String rootName, final MetadataSuggestionNode root) {
+        if (this.updatingInPlace) {
+            final Trie<String, MetadataSuggestionNode> rootSearchIndexCopy = new PatriciaTrie<>(this.rootSearchIndex);
+            rootSearchIndexCopy.put(rootName, root);
+            this.rootSearchIndex = rootSearchIndexCopy;
+        } else {
+            this.rootSearchIndex.put(rootName, root);
+        }
+    }
+
+    private void removeRoot(final String rootName) {
+        if (this.updatingInPlace) {
+            final Trie<String, MetadataSuggestionNode> rootSearchIndexCopy = new PatriciaTrie<>(this.rootSearchIndex);
+            rootSearchIndexCopy.remove(rootName);
+            this.rootSearchIndex = rootSearchIndexCopy;
+        } else {
+            this.rootSearchIndex.remove(rootName);
+        }
+    }
+
+    /**
+     * @param segmentPrefix sanitised prefix
+     * @return nodes at any depth whose names start with the given prefix. Must only be called on a published generation,
+     * from within {@link #read(Function)}
+     */
+    public Collection<List<MetadataSuggestionNode>> findNodesWithSegmentPrefix(final String segmentPrefix) {
+        return this.getSegmentIndex().prefixMap(segmentPrefix).values();
+    }
+
+    /**
+     * @param key key in any of the forms spring relaxed binding accepts within a config file, i.e kebab/camel/snake case
+     *            or with array indexes. Must only be called on a published generation, from within {@link #read(Function)}
+     * @return node the key refers to, null if the key does not match a node as a whole
+     */
+    @Nullable
+    public MetadataSuggestionNode resolveRelaxedKey(final CharSequence key) {
+        return this.getCanonicalKeyIndex().get(PropertyKeyTokenizer.toCanonicalKey(key));
+    }
+
+    /**
+     * @param name name of an environment variable, for e.g `SPRING_DATASOURCE_URL`. Must only be called on a published
+     *             generation, from within {@link #read(Function)}
+     * @return node the variable binds to, null if the name does not match a node as a whole
+     */
+    @Nullable
+    public MetadataSuggestionNode resolveEnvironmentVariable(final CharSequence name) {
+        return this.resolveRelaxedKey(PropertyKeyTokenizer.environmentVariableToCanonicalKey(name));
+    }
+
+    public boolean isEmpty() {
+        return this.rootSearchIndex.isEmpty();
+    }
+
+    /**
+     * @return rough estimate of the heap retained by this generation. See {@link MetadataSuggestionNode#estimateRetainedSize()}
+     */
+    public long estimateRetainedSize() {
+        long size = 0;
+        for (final MetadataSuggestionNode root : this.rootSearchIndex.values()) {
+            size += root.estimateRetainedSize();
+        }
+        return size;
+    }
+
+    private Trie<String, List<MetadataSuggestionNode>> getSegmentIndex() {
+        // read before building, so that an index built while an update came in is never handed out again
+        final int currentModificationCount = this.modificationCount;
+        final Trie<String, List<MetadataSuggestionNode>> cached = VersionedIndex.get(this.segmentIndexRef, currentModificationCount);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Trie<String, List<MetadataSuggestionNode>> segmentIndex = new PatriciaTrie<>();
+        for (final MetadataSuggestionNode root : this.rootSearchIndex.values()) {
+            root.visitSubtree((name, node) -> segmentIndex.computeIfAbsent(name, key -> new ArrayList<>(1)).add(node));
+        }
+        this.segmentIndexRef = new SoftReference<>(new VersionedIndex<>(currentModificationCount, segmentIndex));
+        return segmentIndex;
+    }
+
+    private Map<String, MetadataSuggestionNode> getCanonicalKeyIndex() {
+        final int currentModificationCount = this.modificationCount;
+        Map<String, MetadataSuggestionNode> canonicalKeyIndex = VersionedIndex.get(this.canonicalKeyIndexRef, currentModificationCount);
+        if (canonicalKeyIndex == null) {
+            final Map<String, MetadataSuggestionNode> newCanonicalKeyIndex = new THashMap<>();
+            // subtrees are visited parents first, so the key of the parent is always known by the time its children come in
+            final Map<MetadataSuggestionNode, String> nodeToCanonicalKey = new IdentityHashMap<>();
+            for (final MetadataSuggestionNode root : this.rootSearchIndex.values()) {
+                root.visitSubtree((name, node) -> {
+                    final String parentKey = node.getParent() != null ? nodeToCanonicalKey.get(node.getParent()) : null;
+                    final String canonicalKey = parentKey != null ? parentKey + PropertyKeyTokenizer.SEGMENT_DELIMITER + name : name;
+                    nodeToCanonicalKey.put(node, canonicalKey);
+                    newCanonicalKeyIndex.put(canonicalKey, node);
+                });
+            }
+            canonicalKeyIndex = newCanonicalKeyIndex;
+            this.canonicalKeyIndexRef = new SoftReference<>(new VersionedIndex<>(currentModificationCount, canonicalKeyIndex));
+        }
+        return canonicalKeyIndex;
+    }
+
+    void recordContribution(final String containerPath, final MetadataSuggestionNode node) {
+        this.containerPathToContributedNodes.computeIfAbsent(containerPath, key -> new ArrayList<>()).add(node);
+    }
+
+    /**
+     * Removes all references to the container, along with the nodes that no longer belong to any container
+     *
+     * @param containerPath Represents path to the metadata file container
+     */
+    void removeContainer(final String containerPath) {
+        final List<MetadataSuggestionNode> contributedNodes = this.containerPathToContributedNodes.remove(containerPath);
+        if (contributedNodes != null) {
+            for (final MetadataSuggestionNode contributedNode : contributedNodes) {
+                final MetadataSuggestionNode rootToRemove = contributedNode.removeRefCascadeTillRoot(containerPath);
+                if (rootToRemove != null) {
+                    final String rootName = sanitise(rootToRemove.getOriginalName());
+                    if (this.rootSearchIndex.get(rootName) == rootToRemove) {
+                        this.removeRoot(rootName);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class VersionedIndex<T> {
+        private final int modificationCount;
+        private final T index;
+
+        private VersionedIndex(final int modificationCount, final T index) {
+            this.modificationCount = modificationCount;
+            this.index = index;
+        }
+
+        @Nullable
+        static <T> T get(@Nullable final SoftReference<VersionedIndex<T>> ref, final int modificationCount) {
+            final VersionedIndex<T> versionedIndex = ref != null ? ref.get() : null;
+            return versionedIndex != null && versionedIndex.modificationCount == modificationCount ? versionedIndex.index : null;
+        }
+    }
+
+}
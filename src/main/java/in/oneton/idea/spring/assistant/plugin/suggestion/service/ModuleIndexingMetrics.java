@@ -0,0 +1,25 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Indexing statistics of a module, as of its currently published index generation
+ */
+@Value
+@Builder
+public class ModuleIndexingMetrics {
+
+    String moduleName;
+    long generation;
+    int roots;
+    long estimatedRetainedBytes;
+    /**
+     * Estimated heap saved by deduplicating the strings of the index
+     */
+    long stringPoolBytesSaved;
+    List<ContainerIndexingMetrics> containers;
+
+}
@@ -0,0 +1,116 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.util.Key;
+import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.LastSegmentMatches;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Result of the last key search made from an editor, so that the next keystroke can filter it instead of searching the
+ * index again. i.e while typing `spring.datasource.hik`, the results for `hi` are narrowed down to the ones matching `hik`.
+ * <p>
+ * Only reused for the same module, index generation (& in place updates of it), file type, ancestral keys & siblings, so
+ * any change to the index invalidates it implicitly. Instances are immutable & replaced as a whole in the editor user data.
+ * <p>
+ * Rather than the flat results, the cache holds where the last segment got matched, as a longer last segment that no
+ * longer matches any child of a node makes the search fall back to all of its children, see {@link LastSegmentMatches}
+ */
+final class QueryNarrowingCache {
+
+    private static final Key<QueryNarrowingCache> KEY = Key.create("spring_assistant_plugin_query_narrowing_cache");
+
+    private final Module module;
+    private final MetadataIndex index;
+    private final int modificationCount;
+    private final FileType fileType;
+    @Nullable
+    private final List<String> ancestralKeys;
+    @Nullable
+    private final Set<String> siblingsToExclude;
+    private final String[] querySegmentPrefixes;
+    /**
+     * Whether the search had to dive past the roots, as none of them matched the first segment
+     */
+    @Getter
+    private final boolean midPath;
+    private final LastSegmentMatches lastSegmentMatches;
+
+    private QueryNarrowingCache(final Module module, final MetadataIndex index, final int modificationCount,
+                                final FileType fileType,
+                                @Nullable final List<String> ancestralKeys, @Nullable final Set<String> siblingsToExclude,
+                                final String[] querySegmentPrefixes, final boolean midPath,
+                                final LastSegmentMatches lastSegmentMatches) {
+        this.module = module;
+        this.index = index;
+        this.modificationCount = modificationCount;
+        this.fileType = fileType;
+        this.ancestralKeys = ancestralKeys;
+        this.siblingsToExclude = siblingsToExclude;
+        this.querySegmentPrefixes = querySegmentPrefixes;
+        this.midPath = midPath;
+        this.lastSegmentMatches = lastSegmentMatches;
+    }
+
+    /**
+     * @return cache of the last search made from the editor, if it was made with the same parameters & its query is
+     * narrowed by {@code querySegmentPrefixes}, null otherwise
+     */
+    @Nullable
+    static QueryNarrowingCache find(final Editor editor, final Module module, final MetadataIndex index,
+                                    final FileType fileType, @Nullable final List<String> ancestralKeys,
+                                    @Nullable final Set<String> siblingsToExclude, final String[] querySegmentPrefixes) {
+        final QueryNarrowingCache cache = editor.getUserData(KEY);
+        if (cache == null || cache.module != module || cache.index != index
+                || cache.modificationCount != index.getModificationCount() || cache.fileType != fileType
+                || !Objects.equals(cache.ancestralKeys, ancestralKeys)
+                || !Objects.equals(cache.siblingsToExclude, siblingsToExclude)) {
+            return null;
+        }
+        return cache.isNarrowedBy(querySegmentPrefixes) ? cache : null;
+    }
+
+    /**
+     * @param modificationCount modification count of the index the search ran against, which might have been updated in
+     *                          place since
+     */
+    static void store(final Editor editor, final Module module, final MetadataIndex index, final int modificationCount,
+                      final FileType fileType, @Nullable final List<String> ancestralKeys,
+                      @Nullable final Set<String> siblingsToExclude, final String[] querySegmentPrefixes,
+                      final boolean midPath, final LastSegmentMatches lastSegmentMatches) {
+        editor.putUserData(KEY, new QueryNarrowingCache(module, index, modificationCount, fileType, ancestralKeys,
+                siblingsToExclude, querySegmentPrefixes, midPath, lastSegmentMatches));
+    }
+
+    static void clear(final Editor editor) {
+        editor.putUserData(KEY, null);
+    }
+
+    /**
+     * @return previous matches of the last segment that still match {@code querySegmentPrefixes}, null if the search would
+     * fall back to nodes the previous search never led to
+     */
+    @Nullable
+    LastSegmentMatches narrow(final String[] querySegmentPrefixes) {
+        return this.lastSegmentMatches.narrow(querySegmentPrefixes[querySegmentPrefixes.length - 1]);
+    }
+
+    /**
+     * Only a longer last segment narrows the results. A new segment might bring in nodes below the previous matches, that
+     * were never part of the previous results
+     */
+    private boolean isNarrowedBy(final String[] querySegmentPrefixes) {
+        final int last = this.querySegmentPrefixes.length - 1;
+        return querySegmentPrefixes.length == this.querySegmentPrefixes.length
+                && Arrays.equals(querySegmentPrefixes, 0, last, this.querySegmentPrefixes, 0, last)
+                && querySegmentPrefixes[last].startsWith(this.querySegmentPrefixes[last]);
+    }
+
+}
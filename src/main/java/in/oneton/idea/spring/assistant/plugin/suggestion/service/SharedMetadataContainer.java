@@ -0,0 +1,60 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataStringPool;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHandler;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot.MetadataSnapshotCodec;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.IOException;
+
+/**
+ * Parsed form of a single metadata container, shared by the modules that are indexing it at the same time.
+ * <p>
+ * The metadata is held in its compact encoded form & is never mutated once loaded. Each module replays the entries into
+ * its own index, as the decoded entries pick up module specific state (resolved types, hints, e.t.c), & releases the
+ * container right after. So the encoded form only lives while modules are merging it, & is held on top of (not instead
+ * of) the per module indexes
+ */
+@ToString(of = {"containerInfo", "refCount"})
+public class SharedMetadataContainer {
+
+    @Getter
+    private final MetadataContainerInfo containerInfo;
+    private volatile byte[] payload;
+    /**
+     * Load statistics, see {@link ContainerIndexingMetrics}
+     */
+    @Getter
+    private long bytesRead;
+    @Getter
+    private long parseTimeMillis;
+    @Getter
+    private boolean loadedFromSnapshot;
+    /**
+     * Guarded by the owning {@link MetadataContainerCache}
+     */
+    int refCount;
+
+    SharedMetadataContainer(final MetadataContainerInfo containerInfo) {
+        this.containerInfo = containerInfo;
+    }
+
+    public void replay(final MetadataStringPool stringPool, final SpringConfigurationMetadataHandler handler) throws IOException {
+        MetadataSnapshotCodec.decode(this.payload, stringPool, handler);
+    }
+
+    boolean isLoaded() {
+        return this.payload != null;
+    }
+
+    void setPayload(final byte[] payload, final long bytesRead, final long parseTimeMillis, final boolean loadedFromSnapshot) {
+        this.bytesRead = bytesRead;
+        this.parseTimeMillis = parseTimeMillis;
+        this.loadedFromSnapshot = loadedFromSnapshot;
+        // written last, as the volatile write publishes the statistics as well
+        this.payload = payload;
+    }
+
+}
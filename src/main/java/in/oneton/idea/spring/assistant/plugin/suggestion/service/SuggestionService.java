@@ -1,7 +1,10 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.service;
 
+import com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service.SuggestionIndexerProjectService;
 import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.psi.PsiElement;
 import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
@@ -10,6 +13,7 @@ import org.jetbrains.annotations.NotNull;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface SuggestionService {
 
@@ -17,8 +21,33 @@ public interface SuggestionService {
         return module.getService(SuggestionService.class);
     }
 
+    /**
+     * Requests (re)indexing of the module. Requests are coalesced & run in the background by {@link SuggestionIndexerProjectService}
+     */
     void index();
 
+    /**
+     * Brings the index of the module up to date on the calling thread. Containers merged so far are published as indexing
+     * progresses. Meant to be only invoked by {@link SuggestionIndexerProjectService}
+     *
+     * @param indicator progress of the run. Cancelling it stops the run, keeping the containers merged so far
+     */
+    void indexNow(ProgressIndicator indicator);
+
+    /**
+     * Builds the class metadata of the types most commonly referred to by the properties of the module, so that the first
+     * completion below such a property does not have to. Meant to be only invoked by {@link SuggestionIndexerProjectService},
+     * once the module got indexed
+     *
+     * @param indicator progress of the run. Cancelling it stops the warm up, keeping the types built so far
+     */
+    void warmUp(ProgressIndicator indicator);
+
+    /**
+     * @return statistics of the currently published index of the module
+     */
+    ModuleIndexingMetrics getIndexingMetrics();
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     boolean canProvideSuggestions();
 
@@ -29,6 +58,16 @@ public interface SuggestionService {
     @Nullable
     List<SuggestionNode> findMatchedNodesRootTillEnd(List<String> containerElements);
 
+    /**
+     * Resolves an environment variable to the key it binds to, the way spring relaxed binding does, i.e
+     * `SPRING_DATASOURCE_URL` to `spring.datasource.url` & `MY_LIST_0_NAME` to `my.list[0].name`
+     *
+     * @param name name of the environment variable
+     * @return nodes from root till the node the variable binds to, null if it does not match a metadata key as a whole
+     */
+    @Nullable
+    List<SuggestionNode> findMatchedNodesForEnvironmentVariable(String name);
+
     /**
      * @param fileType                      type of file requesting suggestion
      * @param element                       element on which search is triggered. Useful for cases like identifying chioces that were already selected incase of an enum, e.t.c
@@ -44,4 +83,27 @@ public interface SuggestionService {
                                                       String queryWithDotDelimitedPrefixes,
                                                       @Nullable Set<String> siblingsToExclude);
 
+    /**
+     * Consumer based variant of {@link #findSuggestionsForQueryPrefix(FileType, PsiElement, List, String, Set)}, which hands
+     * out at most {@link SuggestionServiceImpl#MAX_SUGGESTIONS_REGISTRY_KEY} suggestions & checks for cancellation as it
+     * goes. The search ranks the suggestions it finds (exact matches of the last query segment first, then shallower keys)
+     * & keeps the best ones, so it is not a streaming search: nothing is pushed to {@code consumer} till the search is done.
+     * Suggestions are pushed best ranked first & only converted to lookup elements then, so that completion providers can
+     * feed them to the lookup without an intermediate list
+     * <p>
+     * When the editor is known, results of consecutive key searches from it are narrowed down from the previous results
+     * instead of searching the index again, as long as the user keeps extending the last segment of the query
+     *
+     * @param editor   editor completion is triggered from, if any
+     * @param consumer receives lookup elements once the search is done
+     * @return true if suggestions were left out because of the limit, i.e the results are not complete
+     */
+    boolean findSuggestionsForQueryPrefix(FileType fileType,
+                                          PsiElement element,
+                                          @Nullable Editor editor,
+                                          @Nullable List<String> ancestralKeys,
+                                          String queryWithDotDelimitedPrefixes,
+                                          @Nullable Set<String> siblingsToExclude,
+                                          Consumer<LookupElement> consumer);
+
 }
@@ -1,49 +1,72 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.service;
 
 import com.github.eltonsandre.plugin.idea.spring.assistant.common.LogUtil;
+import com.github.eltonsandre.plugin.idea.spring.assistant.suggestion.service.SuggestionIndexerProjectService;
 import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClassType;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiType;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
-import in.oneton.idea.spring.assistant.plugin.initializr.misc.JsonUtil;
+import in.oneton.idea.spring.assistant.plugin.misc.PropertyKeyTokenizer;
 import in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion;
 import in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode;
+import in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassMetadata;
+import in.oneton.idea.spring.assistant.plugin.suggestion.clazz.ClassMetadataCache;
 import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataNonPropertySuggestionNode;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataPropertySuggestionNode;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataSuggestionNode;
-import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadata;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.KeySearchContext;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.LastSegmentMatches;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataGroup;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHandler;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataHint;
 import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot.MetadataSnapshotStore;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.Trie;
-import org.apache.commons.collections4.trie.PatriciaTrie;
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.concurrent.Future;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
-import static com.intellij.openapi.application.ApplicationManager.getApplication;
 import static in.oneton.idea.spring.assistant.plugin.misc.GenericUtil.modifiableList;
 import static in.oneton.idea.spring.assistant.plugin.misc.GenericUtil.truncateIdeaDummyIdentifier;
-import static in.oneton.idea.spring.assistant.plugin.suggestion.Suggestion.PERIOD_DELIMITER;
+import static in.oneton.idea.spring.assistant.plugin.misc.PsiCustomUtil.safeGetValidType;
 import static in.oneton.idea.spring.assistant.plugin.suggestion.SuggestionNode.sanitise;
 import static java.util.Arrays.stream;
 import static java.util.Collections.singletonList;
@@ -56,77 +79,212 @@ public class SuggestionServiceImpl implements SuggestionService {
 
     private static final Logger log = Logger.getInstance(SuggestionServiceImpl.class);
 
+    /**
+     * While indexing, the containers merged so far are published at most this often
+     */
+    private static final long PARTIAL_PUBLISH_INTERVAL_MILLIS = 500;
+    /**
+     * Each partial publish is followed by a copy of the generation built so far. The interval till the next publish is at
+     * least this many times the time that copy took, so that copying stays a fixed share of the indexing time, rather than
+     * growing quadratically with the size of the classpath
+     */
+    private static final int PARTIAL_PUBLISH_COPY_COST_FACTOR = 10;
+    private static final long ACQUISITION_POLL_INTERVAL_MILLIS = 50;
+    /**
+     * Metadata files up to this size are merged into the published generation in place, when they are the only change of
+     * an index run. Copying the whole index costs far more than briefly holding off the searches for such a file
+     */
+    private static final long IN_PLACE_UPDATE_MAX_BYTES = 64 * 1024;
+    /**
+     * Upper bound for the number of suggestions a single search hands out, see `plugin.xml`
+     */
+    static final String MAX_SUGGESTIONS_REGISTRY_KEY = "spring.assistant.completion.max.suggestions";
+    /**
+     * Number of candidates the tree search may find per suggestion handed out. Candidates are found in path order, so the
+     * suggestions handed out are ranked from a pool a few times larger than the limit, while the cost of a search stays bounded
+     */
+    private static final int RANKING_CANDIDATES_FACTOR = 4;
+    /**
+     * Number of property types whose class metadata is built right after indexing, see `plugin.xml`
+     */
+    static final String WARM_UP_TYPES_REGISTRY_KEY = "spring.assistant.warm.up.types";
+
     private final Module module;
     private final Map<String, MetadataContainerInfo> moduleNameToSeenContainerPathToContainerInfo;
 
     /**
-     * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hyphens, underscores, e.t.c in the keys themselves
+     * Serialises index runs. Guards all indexer state, i.e everything other than {@link #index}
+     */
+    private final Object indexLock = new Object();
+    /**
+     * Last published generation of the search index. Searches read it exactly once & go through {@link MetadataIndex#read},
+     * so they always work on a consistent snapshot, even while the next generation is being built or a small change is
+     * applied to this one in place
+     */
+    private volatile MetadataIndex index;
+    /**
+     * Statistics of the containers merged into the index. Guarded by itself, as it is read outside of index runs
      */
-    private final Trie<String, MetadataSuggestionNode> moduleNameToRootSearchIndex;
-    private Future<?> currentExecution;
-    private volatile boolean indexingInProgress;
+    private final Map<String, ContainerIndexingMetrics> containerPathToMetrics = new THashMap<>();
 
     SuggestionServiceImpl(final Module module) {
         this.module = module;
         this.moduleNameToSeenContainerPathToContainerInfo = new THashMap<>();
-        this.moduleNameToRootSearchIndex = new PatriciaTrie<>();
+        this.index = MetadataIndex.EMPTY;
     }
 
     private static String[] toSanitizedPathSegments(final String element) {
-        final String[] splits = element.trim().split(PERIOD_DELIMITER, -1);
-        for (int i = 0; i < splits.length; i++) {
-            splits[i] = sanitise(splits[i]);
-        }
-        return splits;
+        return PropertyKeyTokenizer.toSanitisedSegments(element);
     }
 
     private static String[] toRawPathSegments(final String element) {
-        final String[] splits = element.trim().split(PERIOD_DELIMITER, -1);
-        for (int i = 0; i < splits.length; i++) {
-            splits[i] = splits[i].trim();
-        }
-        return splits;
+        return PropertyKeyTokenizer.toRawSegments(element);
     }
 
     @Override
     public void index() {
-        if (this.currentExecution != null && !this.currentExecution.isDone()) {
-            this.currentExecution.cancel(false);
+        SuggestionIndexerProjectService.getInstance(this.module.getProject()).index(new Module[]{this.module});
+    }
+
+    @Override
+    public void indexNow(final ProgressIndicator indicator) {
+        if (this.module.isDisposed()) {
+            return;
         }
 
-        this.currentExecution = getApplication().executeOnPooledThread(() ->
-                DumbService.getInstance(this.module.getProject()).runReadActionInSmartMode(() -> {
-                    LogUtil.debug(() -> log.debug("--> Indexing requested for module " + this.module.getName()));
+        LogUtil.debug(() -> log.debug("--> Indexing requested for module " + this.module.getName()));
 
-                    final StopWatch moduleTimer = new StopWatch();
-                    moduleTimer.start();
+        final StopWatch moduleTimer = new StopWatch();
+        moduleTimer.start();
 
-                    this.indexingInProgress = false;
-                    try {
-                        final OrderEnumerator moduleOrderEnumerator = OrderEnumerator.orderEntries(this.module);
+        try {
+            synchronized (this.indexLock) {
+                final DumbService dumbService = DumbService.getInstance(this.module.getProject());
+                final List<MetadataContainerInfo> newModuleContainersToProcess = dumbService.runReadActionInSmartMode(
+                        () -> this.computeNewContainersToProcess(OrderEnumerator.orderEntries(this.module)));
+                final List<MetadataContainerInfo> moduleContainersToRemove = dumbService.runReadActionInSmartMode(
+                        () -> this.computeContainersToRemove(OrderEnumerator.orderEntries(this.module)));
+
+                if (!newModuleContainersToProcess.isEmpty() || !moduleContainersToRemove.isEmpty()) {
+                    this.processContainers(indicator, newModuleContainersToProcess, moduleContainersToRemove);
+                }
+            }
+        } finally {
+            moduleTimer.stop();
+            LogUtil.debug(() -> log.debug("<-- Indexing took " + moduleTimer + " for module " + this.module.getName()));
+        }
+    }
 
-                        final List<MetadataContainerInfo> newModuleContainersToProcess = this.computeNewContainersToProcess(moduleOrderEnumerator);
-                        final List<MetadataContainerInfo> moduleContainersToRemove = this.computeContainersToRemove(moduleOrderEnumerator);
-                        this.processContainers(newModuleContainersToProcess, moduleContainersToRemove);
+    @Override
+    public void warmUp(final ProgressIndicator indicator) {
+        final int maxTypes = Registry.intValue(WARM_UP_TYPES_REGISTRY_KEY);
+        if (maxTypes <= 0 || this.module.isDisposed()) {
+            return;
+        }
+
+        final List<String> classNames = this.index.read(currentIndex -> findMostCommonClassNames(currentIndex, maxTypes));
+        LogUtil.debug(() -> log.debug("Warming up class metadata of " + classNames.size() + " types for module " + this.module.getName()));
+
+        final ClassMetadataCache classMetadataCache = ClassMetadataCache.getInstance(this.module);
+        for (int i = 0; i < classNames.size(); i++) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) i / classNames.size());
+
+            final String className = classNames.get(i);
+            indicator.setText2(className);
+            // a read action per type, which is restarted (rather than blocking) when a write action comes in
+            ReadAction.nonBlocking(() -> this.warmUpType(classMetadataCache, className))
+                    .inSmartMode(this.module.getProject())
+                    .expireWith(this.module)
+                    .wrapProgress(indicator)
+                    .executeSynchronously();
+        }
+    }
+
+    private void warmUpType(final ClassMetadataCache classMetadataCache, final String className) {
+        final PsiType type = safeGetValidType(this.module, className);
+        if (type instanceof PsiClassType) {
+            final ClassMetadata classMetadata = classMetadataCache.get((PsiClassType) type);
+            if (classMetadata != null) {
+                // children are only collected on first access
+                classMetadata.findDirectChildrenForQueryPrefix(this.module, "");
+            }
+        }
+    }
 
-                    } finally {
-                        this.indexingInProgress = true;
-                        moduleTimer.stop();
-                        LogUtil.debug(() -> log.debug("<-- Indexing took " + moduleTimer + " for module " + this.module.getName()));
+    /**
+     * Types from `java.*` are either leaves or cheap to build, its the configuration classes that are worth warming up
+     *
+     * @return class names of the properties, most commonly referred to first
+     */
+    private static List<String> findMostCommonClassNames(final MetadataIndex currentIndex, final int maxTypes) {
+        final Map<String, Integer> classNameToCount = new THashMap<>();
+        for (final MetadataSuggestionNode root : currentIndex.getRootSearchIndex().values()) {
+            root.visitSubtree((name, node) -> {
+                if (node.isProperty()) {
+                    final String className = ((MetadataPropertySuggestionNode) node).getProperty().getClassName();
+                    if (className != null && className.indexOf('.') != -1 && !className.startsWith("java.")) {
+                        classNameToCount.merge(className, 1, Integer::sum);
                     }
-                })
-        );
+                }
+            });
+        }
+
+        return classNameToCount.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(maxTypes)
+                .map(Map.Entry::getKey)
+                .collect(toList());
+    }
+
+    @Override
+    public ModuleIndexingMetrics getIndexingMetrics() {
+        final List<ContainerIndexingMetrics> containers;
+        synchronized (this.containerPathToMetrics) {
+            containers = new ArrayList<>(this.containerPathToMetrics.values());
+        }
+        containers.sort(comparing(ContainerIndexingMetrics::getBuildTimeMillis).reversed());
+
+        return this.index.read(currentIndex -> ModuleIndexingMetrics.builder()
+                .moduleName(this.module.getName())
+                .generation(currentIndex.getGeneration())
+                .roots(currentIndex.getRootSearchIndex().size())
+                .estimatedRetainedBytes(currentIndex.estimateRetainedSize())
+                .stringPoolBytesSaved(currentIndex.getStringPoolBytesSaved())
+                .containers(containers)
+                .build());
     }
 
     @Nullable
     @Override
     public List<SuggestionNode> findMatchedNodesRootTillEnd(final List<String> containerElements) {
+        return this.index.read(currentIndex -> this.doFindMatchedNodesRootTillEnd(currentIndex, containerElements));
+    }
+
+    @Nullable
+    @Override
+    public List<SuggestionNode> findMatchedNodesForEnvironmentVariable(final String name) {
+        return this.index.read(currentIndex -> {
+            final MetadataSuggestionNode resolvedNode = currentIndex.resolveEnvironmentVariable(name);
+            return resolvedNode != null ? resolvedNode.getNodesFromRoot() : null;
+        });
+    }
+
+    @Nullable
+    private List<SuggestionNode> doFindMatchedNodesRootTillEnd(final MetadataIndex currentIndex,
+                                                               final List<String> containerElements) {
+        // most of the time the elements refer to a metadata node as a whole, which the canonical key index resolves directly
+        final MetadataSuggestionNode resolvedNode = currentIndex.resolveRelaxedKey(String.join(".", containerElements));
+        if (resolvedNode != null) {
+            return resolvedNode.getNodesFromRoot();
+        }
+
         final String[] pathSegments = containerElements
                 .stream()
                 .flatMap(element -> stream(toSanitizedPathSegments(element)))
                 .toArray(String[]::new);
 
-        final MetadataSuggestionNode searchStartNode = this.moduleNameToRootSearchIndex.get(pathSegments[0]);
+        final MetadataSuggestionNode searchStartNode = currentIndex.getRootSearchIndex().get(pathSegments[0]);
         if (Objects.nonNull(searchStartNode)) {
             final List<SuggestionNode> matches = modifiableList(searchStartNode);
             if (pathSegments.length > 1) {
@@ -140,7 +298,7 @@ public class SuggestionServiceImpl implements SuggestionService {
 
     @Override
     public boolean canProvideSuggestions() {
-        return this.indexingInProgress && !this.moduleNameToRootSearchIndex.isEmpty();
+        return !this.index.read(MetadataIndex::isEmpty);
     }
 
     @Override
@@ -148,134 +306,371 @@ public class SuggestionServiceImpl implements SuggestionService {
                                                              @Nullable final List<String> ancestralKeys,
                                                              final String queryWithDotDelimitedPrefixes,
                                                              @Nullable final Set<String> siblingsToExclude) {
+        final List<LookupElement> lookupElements = new ArrayList<>();
+        this.findSuggestionsForQueryPrefix(fileType, element, null, ancestralKeys, queryWithDotDelimitedPrefixes,
+                siblingsToExclude, lookupElements::add);
+        return lookupElements;
+    }
+
+    @Override
+    public boolean findSuggestionsForQueryPrefix(final FileType fileType, final PsiElement element,
+                                                 @Nullable final Editor editor,
+                                                 @Nullable final List<String> ancestralKeys,
+                                                 final String queryWithDotDelimitedPrefixes,
+                                                 @Nullable final Set<String> siblingsToExclude,
+                                                 final Consumer<LookupElement> consumer) {
+        return this.findSuggestionsForQueryPrefix(this.index, Registry.intValue(MAX_SUGGESTIONS_REGISTRY_KEY), fileType,
+                element, editor, ancestralKeys, queryWithDotDelimitedPrefixes, siblingsToExclude, consumer);
+    }
+
+    /**
+     * Searches the given generation rather than the published one, with the given limit
+     */
+    boolean findSuggestionsForQueryPrefix(final MetadataIndex searchIndex, final int maxSuggestions,
+                                          final FileType fileType, final PsiElement element, @Nullable final Editor editor,
+                                          @Nullable final List<String> ancestralKeys,
+                                          final String queryWithDotDelimitedPrefixes,
+                                          @Nullable final Set<String> siblingsToExclude,
+                                          final Consumer<LookupElement> consumer) {
 
         LogUtil.debug(() -> log.debug("Search requested for " + queryWithDotDelimitedPrefixes));
 
         final StopWatch timer = new StopWatch();
         timer.start();
 
+        final String[] querySegmentPrefixes = toSanitizedPathSegments(queryWithDotDelimitedPrefixes);
+        SuggestionSink sink = null;
         try {
-            final String[] querySegmentPrefixes = toSanitizedPathSegments(queryWithDotDelimitedPrefixes);
-            Set<Suggestion> suggestions = null;
-
-            if (ancestralKeys != null) {
-                final String[] ancestralKeySegments = ancestralKeys.stream()
-                        .flatMap(key -> stream(toRawPathSegments(key)))
-                        .toArray(String[]::new);
-
-                final MetadataSuggestionNode rootNode = this.moduleNameToRootSearchIndex.get(sanitise(ancestralKeySegments[0]));
-                if (rootNode != null) {
-                    final List<SuggestionNode> matchesRootToDeepest;
-                    SuggestionNode startSearchFrom = null;
-                    if (ancestralKeySegments.length > 1) {
-                        final String[] sanitisedAncestralPathSegments = stream(ancestralKeySegments)
-                                .map(SuggestionNode::sanitise)
-                                .toArray(String[]::new);
-
-                        matchesRootToDeepest = rootNode.findDeepestSuggestionNode(this.module, modifiableList(rootNode),
-                                sanitisedAncestralPathSegments, 1);
-
-                        if (CollectionUtils.isNotEmpty(matchesRootToDeepest)) {
-                            startSearchFrom = matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
-                        }
+            // the search might be run again if the index got updated in place meanwhile, so each run gets a sink of its own
+            sink = searchIndex.read(currentIndex -> {
+                final SuggestionSink attemptSink = new SuggestionSink(maxSuggestions, querySegmentPrefixes, editor != null,
+                        currentIndex.getModificationCount());
+                this.doFindSuggestions(currentIndex, fileType, element, editor, ancestralKeys, querySegmentPrefixes,
+                        siblingsToExclude, attemptSink);
+                return attemptSink;
+            });
+            if (editor != null) {
+                this.cacheResults(editor, searchIndex, fileType, ancestralKeys, siblingsToExclude, querySegmentPrefixes, sink);
+            }
+            // lookup elements are built & handed out only once the index is no longer held
+            sink.passOn(consumer);
+            return sink.isTruncated();
+        } finally {
+            timer.stop();
+            final SuggestionSink completedSink = sink;
+            LogUtil.debug(() -> log.debug("Search took " + timer + (completedSink == null ? ", failed"
+                    : ", found " + completedSink.getCount() + " suggestions" + (completedSink.isTruncated() ? " (truncated)" : ""))));
+        }
+    }
 
-                    } else {
-                        startSearchFrom = rootNode;
-                        matchesRootToDeepest = singletonList(rootNode);
+    /**
+     * Searches the generation & passes the suggestions found on to the sink. Must be run via {@link MetadataIndex#read},
+     * so must not have any side effects
+     */
+    private void doFindSuggestions(final MetadataIndex currentIndex, final FileType fileType, final PsiElement element,
+                                   @Nullable final Editor editor, @Nullable final List<String> ancestralKeys,
+                                   final String[] querySegmentPrefixes, @Nullable final Set<String> siblingsToExclude,
+                                   final SuggestionSink sink) {
+        final Trie<String, MetadataSuggestionNode> rootSearchIndex = currentIndex.getRootSearchIndex();
+
+        if (editor != null) {
+            final QueryNarrowingCache cache = QueryNarrowingCache.find(editor, this.module, currentIndex, fileType,
+                    ancestralKeys, siblingsToExclude, querySegmentPrefixes);
+            // a top level query that no longer matches any root has to dive past the roots, which the previous search did not
+            if (cache != null && (ancestralKeys != null
+                    || cache.isMidPath() == rootSearchIndex.prefixMap(querySegmentPrefixes[0]).isEmpty())) {
+                final LastSegmentMatches narrowed = cache.narrow(querySegmentPrefixes);
+                // null means the search would fall back to all children of a node whose children no longer match, lets search again
+                if (narrowed != null) {
+                    LogUtil.debug(() -> log.debug("Narrowed previous results of the editor for " + String.join(".", querySegmentPrefixes)));
+                    sink.offerAll(narrowed.getSuggestions());
+                    sink.setNarrowed(narrowed);
+                    return;
+                }
+            }
+        }
+
+        if (ancestralKeys != null) {
+            final String[] ancestralKeySegments = ancestralKeys.stream()
+                    .flatMap(key -> stream(toRawPathSegments(key)))
+                    .toArray(String[]::new);
+
+            final MetadataSuggestionNode rootNode = rootSearchIndex.get(sanitise(ancestralKeySegments[0]));
+            if (rootNode != null) {
+                final List<SuggestionNode> matchesRootToDeepest;
+                SuggestionNode startSearchFrom = null;
+                if (ancestralKeySegments.length > 1) {
+                    final String[] sanitisedAncestralPathSegments = stream(ancestralKeySegments)
+                            .map(SuggestionNode::sanitise)
+                            .toArray(String[]::new);
+
+                    matchesRootToDeepest = rootNode.findDeepestSuggestionNode(this.module, modifiableList(rootNode),
+                            sanitisedAncestralPathSegments, 1);
+
+                    if (CollectionUtils.isNotEmpty(matchesRootToDeepest)) {
+                        startSearchFrom = matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
                     }
 
-                    if (startSearchFrom != null) {
-                        // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
-                        if (startSearchFrom.isLeaf(this.module)) {
-                            suggestions = startSearchFrom.findValueSuggestionsForPrefix(this.module, fileType,
-                                    unmodifiableList(matchesRootToDeepest),
-                                    sanitise(truncateIdeaDummyIdentifier(element.getText())), siblingsToExclude);
-                        } else {
-                            suggestions = startSearchFrom.findKeySuggestionsForQueryPrefix(this.module, fileType,
-                                    unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
-                                    querySegmentPrefixes, 0, siblingsToExclude);
-                        }
+                } else {
+                    startSearchFrom = rootNode;
+                    matchesRootToDeepest = singletonList(rootNode);
+                }
+
+                if (startSearchFrom != null) {
+                    // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
+                    if (startSearchFrom.isLeaf(this.module)) {
+                        sink.setValueSearch(true);
+                        sink.offerAll(startSearchFrom.findValueSuggestionsForPrefix(this.module, fileType,
+                                unmodifiableList(matchesRootToDeepest),
+                                sanitise(truncateIdeaDummyIdentifier(element.getText())), siblingsToExclude));
+                    } else if (startSearchFrom instanceof MetadataSuggestionNode) {
+                        sink.offerAll(((MetadataSuggestionNode) startSearchFrom).findKeySuggestionsForQueryPrefix(this.module,
+                                fileType, unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
+                                querySegmentPrefixes, 0, siblingsToExclude, sink.getSearchContext()));
+                    } else {
+                        // children of a class are bounded by the class itself, but are not traced
+                        sink.getSearchContext().stopTracing();
+                        sink.offerAll(startSearchFrom.findKeySuggestionsForQueryPrefix(this.module, fileType,
+                                unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
+                                querySegmentPrefixes, 0, siblingsToExclude));
                     }
                 }
+            }
+
+        } else {
+            final String rootQuerySegmentPrefix = querySegmentPrefixes[0];
+            final SortedMap<String, MetadataSuggestionNode> topLevelQueryResults = rootSearchIndex.prefixMap(rootQuerySegmentPrefix);
+
+            Set<MetadataSuggestionNode> rootsToExclude = null;
+            if (siblingsToExclude != null) {
+                rootsToExclude = siblingsToExclude
+                        .stream()
+                        .flatMap(exclude -> rootSearchIndex.prefixMap(exclude).values().stream())
+                        .collect(toSet());
+            }
 
+            // If no results are found at the top level, let dive deeper and find matches
+            if (topLevelQueryResults == null || topLevelQueryResults.size() == 0) {
+                sink.setMidPath(true);
+                this.doFindSuggestionsForMidPathQuery(currentIndex, fileType, querySegmentPrefixes, rootsToExclude, sink);
             } else {
-                final String rootQuerySegmentPrefix = querySegmentPrefixes[0];
-                final SortedMap<String, MetadataSuggestionNode> topLevelQueryResults = this.moduleNameToRootSearchIndex.prefixMap(rootQuerySegmentPrefix);
+                this.doFindSuggestionsForQueryPrefix(fileType, topLevelQueryResults.values(), rootsToExclude,
+                        querySegmentPrefixes, sink);
+            }
+        }
+    }
 
-                final Collection<MetadataSuggestionNode> childNodes;
-                final int querySegmentPrefixStartIndex;
+    /**
+     * Only complete key search results can be narrowed down by the next keystroke. Values are matched differently & a
+     * truncated result misses suggestions the narrower query might need. Nor can a search whose last segment got matched
+     * by something that could not be traced
+     */
+    private void cacheResults(final Editor editor, final MetadataIndex searchIndex, final FileType fileType,
+                              @Nullable final List<String> ancestralKeys, @Nullable final Set<String> siblingsToExclude,
+                              final String[] querySegmentPrefixes, final SuggestionSink sink) {
+        final LastSegmentMatches lastSegmentMatches = sink.getLastSegmentMatches();
+        if (lastSegmentMatches == null || sink.isValueSearch() || sink.isTruncated()) {
+            QueryNarrowingCache.clear(editor);
+        } else {
+            QueryNarrowingCache.store(editor, this.module, searchIndex, sink.getModificationCount(), fileType, ancestralKeys,
+                    siblingsToExclude, querySegmentPrefixes, sink.isMidPath(), lastSegmentMatches);
+        }
+    }
 
-                // If no results are found at the top level, let dive deeper and find matches
-                if (topLevelQueryResults == null || topLevelQueryResults.size() == 0) {
-                    childNodes = this.moduleNameToRootSearchIndex.values();
-                    querySegmentPrefixStartIndex = 0;
-                } else {
-                    childNodes = topLevelQueryResults.values();
-                    querySegmentPrefixStartIndex = 1;
-                }
+    private void doFindSuggestionsForQueryPrefix(final FileType fileType, final Collection<MetadataSuggestionNode> roots,
+                                                 @Nullable final Set<MetadataSuggestionNode> rootsToExclude,
+                                                 final String[] querySegmentPrefixes, final SuggestionSink sink) {
+        for (final MetadataSuggestionNode root : roots) {
+            if (sink.isFull()) {
+                return;
+            }
+            ProgressManager.checkCanceled();
 
-                final Collection<MetadataSuggestionNode> nodesToSearchAgainst;
-                if (siblingsToExclude != null) {
-                    final Set<MetadataSuggestionNode> nodesToExclude = siblingsToExclude
-                            .stream()
-                            .flatMap(exclude -> this.moduleNameToRootSearchIndex.prefixMap(exclude).values().stream())
-                            .collect(toSet());
+            if (rootsToExclude == null || !rootsToExclude.contains(root)) {
+                final SortedSet<Suggestion> suggestions = root.findKeySuggestionsForQueryPrefix(this.module, fileType,
+                        modifiableList(root), 0, querySegmentPrefixes, 1, null, sink.getSearchContext());
+                if (querySegmentPrefixes.length == 1) {
+                    sink.getSearchContext().onLastSegmentMatched(null, sanitise(root.getOriginalName()), suggestions);
+                }
+                sink.offerAll(suggestions);
+            }
+        }
+    }
 
-                    nodesToSearchAgainst = childNodes.stream()
-                            .filter(node -> !nodesToExclude.contains(node))
-                            .collect(toList());
-                } else {
-                    nodesToSearchAgainst = childNodes;
+    /**
+     * Looks up the nodes at any depth that match the first query segment via the segment index of the generation, instead
+     * of walking the whole tree. Rest of the segments are matched below each of these nodes
+     */
+    private void doFindSuggestionsForMidPathQuery(final MetadataIndex currentIndex, final FileType fileType,
+                                                  final String[] querySegmentPrefixes,
+                                                  @Nullable final Set<MetadataSuggestionNode> rootsToExclude,
+                                                  final SuggestionSink sink) {
+        for (final List<MetadataSuggestionNode> matchedNodes : currentIndex.findNodesWithSegmentPrefix(querySegmentPrefixes[0])) {
+            for (final MetadataSuggestionNode matchedNode : matchedNodes) {
+                if (sink.isFull()) {
+                    return;
+                }
+                ProgressManager.checkCanceled();
+
+                final List<SuggestionNode> matchesRootTillNode = matchedNode.getNodesFromRoot();
+                if (rootsToExclude == null || !rootsToExclude.contains(matchesRootTillNode.get(0))) {
+                    final SortedSet<Suggestion> suggestions = matchedNode.findKeySuggestionsForQueryPrefix(this.module,
+                            fileType, matchesRootTillNode, 0, querySegmentPrefixes, 1, null, sink.getSearchContext());
+                    if (querySegmentPrefixes.length == 1) {
+                        sink.getSearchContext().onLastSegmentMatched(null, sanitise(matchedNode.getOriginalName()),
+                                suggestions);
+                    }
+                    sink.offerAll(suggestions);
                 }
+            }
+        }
+    }
+
+    /**
+     * Collects the suggestions of a search & keeps the best ranked ones, up to the limit. Suggestions found via more than one
+     * node are only kept once. Suggestions are only converted to lookup elements & passed on via {@link #passOn(Consumer)}
+     * once the search is done, so that the index is not held while the completion consumes them.
+     * <p>
+     * Key suggestions that have a node named exactly as the last query segment rank first, then the shallower ones, then the
+     * ones found first (i.e by path). Value suggestions keep the order they were found in. The tree search shares a budget of
+     * {@link #RANKING_CANDIDATES_FACTOR} times the limit via {@link #getSearchContext()}, so that it stops once enough
+     * candidates are found, rather than per root
+     */
+    private static class SuggestionSink {
+
+        private static final Comparator<RankedSuggestion> BEST_FIRST = comparing((RankedSuggestion ranked) -> !ranked.exactMatch)
+                .thenComparingInt(ranked -> ranked.depth)
+                .thenComparingInt(ranked -> ranked.foundAt);
+
+        private final int limit;
+        private final String lastQuerySegment;
+        private final Set<Suggestion> offeredSet = new THashSet<>();
+        /**
+         * Best ranked suggestions so far, worst first, so that it is the one dropped once a better one comes in
+         */
+        private final PriorityQueue<RankedSuggestion> kept = new PriorityQueue<>(BEST_FIRST.reversed());
+        private int offeredCount;
+        private boolean truncated;
+        /**
+         * State of the tree search
+         */
+        @Getter
+        private final KeySearchContext searchContext;
+        @Getter
+        @Setter
+        private boolean valueSearch;
+        @Getter
+        @Setter
+        private boolean midPath;
+        /**
+         * Previous results of the editor the suggestions were narrowed down from, if any
+         */
+        @Setter
+        @Nullable
+        private LastSegmentMatches narrowed;
+        /**
+         * Modification count of the index the search ran against
+         */
+        @Getter
+        private final int modificationCount;
+
+        SuggestionSink(final int limit, final String[] querySegmentPrefixes, final boolean traceLastSegment,
+                       final int modificationCount) {
+            this.limit = limit;
+            this.modificationCount = modificationCount;
+            this.lastQuerySegment = querySegmentPrefixes[querySegmentPrefixes.length - 1];
+            this.searchContext = new KeySearchContext((int) Math.min(Integer.MAX_VALUE, (long) limit * RANKING_CANDIDATES_FACTOR),
+                    traceLastSegment);
+        }
+
+        int getCount() {
+            return this.kept.size();
+        }
 
-                suggestions = this.doFindSuggestionsForQueryPrefix(fileType, nodesToSearchAgainst, querySegmentPrefixes, querySegmentPrefixStartIndex);
+        boolean isFull() {
+            return this.searchContext.isExhausted();
+        }
+
+        /**
+         * @return whether suggestions were dropped or the search stopped early. A search that used up its budget exactly is
+         * reported as truncated too, as the tree search can not tell it apart from one that had more to find
+         */
+        boolean isTruncated() {
+            return this.truncated || this.searchContext.isExhausted();
+        }
+
+        void offerAll(@Nullable final Collection<Suggestion> suggestions) {
+            if (suggestions == null) {
+                return;
             }
 
-            if (suggestions != null) {
-                return this.toLookupElements(suggestions);
+            for (final Suggestion suggestion : suggestions) {
+                if (!this.offeredSet.add(suggestion)) {
+                    continue;
+                }
+
+                final boolean exactMatch = !this.valueSearch && this.hasNodeNamedAsLastQuerySegment(suggestion);
+                final int depth = this.valueSearch ? 0 : suggestion.getMatchesTopFirst().size();
+                final RankedSuggestion candidate = new RankedSuggestion(suggestion, exactMatch, depth, this.offeredCount++);
+                if (this.kept.size() < this.limit) {
+                    this.kept.add(candidate);
+                } else {
+                    this.truncated = true;
+                    if (BEST_FIRST.compare(candidate, this.kept.peek()) < 0) {
+                        this.kept.poll();
+                        this.kept.add(candidate);
+                    }
+                }
             }
+        }
 
-            return null;
+        /**
+         * @return where the last query segment got matched, null if unknown
+         */
+        @Nullable
+        LastSegmentMatches getLastSegmentMatches() {
+            return this.narrowed != null ? this.narrowed : this.searchContext.getLastSegmentMatches();
+        }
 
-        } finally {
-            timer.stop();
-            LogUtil.debug(() -> log.debug("Search took " + timer));
+        /**
+         * Passes the kept suggestions on, best ranked first
+         */
+        void passOn(final Consumer<LookupElement> consumer) {
+            final RankedSuggestion[] bestFirst = this.kept.toArray(new RankedSuggestion[0]);
+            Arrays.sort(bestFirst, BEST_FIRST);
+            for (final RankedSuggestion ranked : bestFirst) {
+                consumer.accept(ranked.suggestion.newLookupElement());
+            }
         }
-    }
 
-    @Nullable
-    private Set<Suggestion> doFindSuggestionsForQueryPrefix(final FileType fileType,
-                                                            final Collection<MetadataSuggestionNode> nodesToSearchWithin,
-                                                            final String[] querySegmentPrefixes, final int querySegmentPrefixStartIndex) {
-        Set<Suggestion> suggestions = null;
-        for (final MetadataSuggestionNode suggestionNode : nodesToSearchWithin) {
-            final Set<Suggestion> matchedSuggestions = suggestionNode.findKeySuggestionsForQueryPrefix(this.module, fileType,
-                    modifiableList(suggestionNode), 0,
-                    querySegmentPrefixes, querySegmentPrefixStartIndex);
-
-            if (matchedSuggestions != null) {
-                if (suggestions == null) {
-                    suggestions = new THashSet<>();
+        private boolean hasNodeNamedAsLastQuerySegment(final Suggestion suggestion) {
+            for (final SuggestionNode node : suggestion.getMatchesTopFirst()) {
+                if (this.lastQuerySegment.equals(sanitise(node.getOriginalName()))) {
+                    return true;
                 }
-                suggestions.addAll(matchedSuggestions);
             }
+            return false;
         }
 
-        return suggestions;
     }
 
-    @Nullable
-    private List<LookupElement> toLookupElements(@Nullable final Set<Suggestion> suggestions) {
-        if (suggestions == null) {
-            return null;
+    private static final class RankedSuggestion {
+        private final Suggestion suggestion;
+        private final boolean exactMatch;
+        private final int depth;
+        private final int foundAt;
+
+        private RankedSuggestion(final Suggestion suggestion, final boolean exactMatch, final int depth, final int foundAt) {
+            this.suggestion = suggestion;
+            this.exactMatch = exactMatch;
+            this.depth = depth;
+            this.foundAt = foundAt;
         }
-        return suggestions.stream()
-                .map(Suggestion::newLookupElement)
-                .collect(toList());
     }
 
     private List<MetadataContainerInfo> computeNewContainersToProcess(final OrderEnumerator orderEnumerator) {
         final List<MetadataContainerInfo> containersToProcess = new ArrayList<>();
+        final Set<String> containerPathsToProcess = new THashSet<>();
 
         for (final VirtualFile metadataFileContainer : orderEnumerator.recursively().classes().getRoots()) {
             final Collection<MetadataContainerInfo> metadataContainerInfos = MetadataContainerInfo.newInstances(metadataFileContainer);
@@ -299,10 +694,13 @@ public class SuggestionServiceImpl implements SuggestionService {
                 final boolean looksFresh = !seenBefore || updatedSinceLastSeen;
                 final boolean processMetadata = looksFresh && metadataContainerInfo.containsMetadataFile();
                 if (processMetadata) {
-                    containersToProcess.add(metadataContainerInfo);
-                }
-
-                if (looksFresh) {
+                    // same container can be reachable via multiple roots
+                    if (containerPathsToProcess.add(metadataContainerInfo.getContainerArchiveOrFileRef())) {
+                        containersToProcess.add(metadataContainerInfo);
+                    }
+                } else if (looksFresh) {
+                    // containers with metadata are only marked as seen once they are merged into the index, so that a
+                    // cancelled run leaves them for the next one
                     try {
                         this.moduleNameToSeenContainerPathToContainerInfo
                                 .put(metadataContainerInfo.getContainerArchiveOrFileRef(), metadataContainerInfo);
@@ -347,207 +745,388 @@ public class SuggestionServiceImpl implements SuggestionService {
                 .collect(toList());
     }
 
-    private void processContainers(final List<MetadataContainerInfo> toProcess, final List<MetadataContainerInfo> containersToRemove) {
+    private void processContainers(final ProgressIndicator indicator, final List<MetadataContainerInfo> toProcess,
+                                   final List<MetadataContainerInfo> containersToRemove) {
+        if (this.canUpdateInPlace(toProcess, containersToRemove)) {
+            this.updateContainerInPlace(indicator, toProcess.get(0));
+            return;
+        }
+
+        // strings of removed containers are only released by starting over with a fresh pool
+        MetadataIndex nextIndex = this.index.newGeneration(CollectionUtils.isNotEmpty(containersToRemove));
+
         // Lets remove references to files that are no longer present in classpath
         if (CollectionUtils.isNotEmpty(containersToRemove)) {
-            containersToRemove.stream()
-                    .filter(Objects::nonNull)
-                    .forEach(this::removeReferences);
+            for (final MetadataContainerInfo containerInfo : containersToRemove) {
+                if (containerInfo != null) {
+                    this.removeReferences(nextIndex, containerInfo);
+                }
+            }
         }
 
-        for (final MetadataContainerInfo metadataContainerInfo : toProcess) {
-            // lets remove existing references from search index, as these files are modified, so that we can rebuild index
-            if (this.moduleNameToSeenContainerPathToContainerInfo.containsKey(metadataContainerInfo.getContainerArchiveOrFileRef())) {
-                this.removeReferences(metadataContainerInfo);
+        final MetadataContainerCache containerCache = MetadataContainerCache.getInstance();
+        // Containers are read & parsed in parallel, but merged into the index one at a time, in classpath order
+        final List<CompletableFuture<SharedMetadataContainer>> acquisitions = containerCache.acquireAll(toProcess);
+        final DumbService dumbService = DumbService.getInstance(this.module.getProject());
+
+        indicator.setIndeterminate(false);
+        int nextToMerge = 0;
+        long lastPublishedAt = System.currentTimeMillis();
+        long publishIntervalMillis = PARTIAL_PUBLISH_INTERVAL_MILLIS;
+        try {
+            while (nextToMerge < toProcess.size()) {
+                indicator.checkCanceled();
+                indicator.setFraction((double) nextToMerge / toProcess.size());
+
+                final MetadataContainerInfo metadataContainerInfo = toProcess.get(nextToMerge);
+                final String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
+                indicator.setText2(containerPath);
+
+                final SharedMetadataContainer sharedContainer;
+                try {
+                    sharedContainer = awaitAcquisition(acquisitions.get(nextToMerge), indicator);
+                } catch (final CompletionException e) {
+                    nextToMerge++;
+                    this.onContainerFailure(nextIndex, metadataContainerInfo, e.getCause());
+                    continue;
+                }
+                nextToMerge++;
+
+                final MetadataIndex targetIndex = nextIndex;
+                try {
+                    // read action is only held per container, so that write actions are never blocked for long
+                    dumbService.runReadActionInSmartMode(() -> {
+                        try {
+                            this.mergeContainer(targetIndex, metadataContainerInfo, sharedContainer);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (final UncheckedIOException e) {
+                    this.onContainerFailure(nextIndex, metadataContainerInfo, e.getCause());
+                } catch (final ProcessCanceledException e) {
+                    // container is only partially merged, lets drop it so that the next run starts over
+                    this.removeReferences(nextIndex, metadataContainerInfo);
+                    throw e;
+                } finally {
+                    // once replayed, the index no longer needs the container, lets let the cache drop it
+                    containerCache.release(sharedContainer);
+                }
+
+                // lets make the containers merged so far available for completion, while the rest are still being processed
+                final boolean moreToMerge = nextToMerge < toProcess.size();
+                if (moreToMerge && System.currentTimeMillis() - lastPublishedAt >= publishIntervalMillis) {
+                    this.publish(nextIndex);
+                    final long copyStartedAt = System.currentTimeMillis();
+                    nextIndex = nextIndex.newGeneration();
+                    lastPublishedAt = System.currentTimeMillis();
+                    publishIntervalMillis = Math.max(PARTIAL_PUBLISH_INTERVAL_MILLIS,
+                            (lastPublishedAt - copyStartedAt) * PARTIAL_PUBLISH_COPY_COST_FACTOR);
+                }
             }
+        } finally {
+            // containers that were acquired on behalf of this run, but never got merged must not stay referenced either
+            acquisitions.subList(nextToMerge, acquisitions.size())
+                    .forEach(acquisition -> acquisition.thenAccept(containerCache::release));
+            // even if the run got cancelled/failed midway, the new generation is consistent with the indexer state
+            this.publish(nextIndex);
+        }
+    }
 
-            final String metadataFilePath = metadataContainerInfo.getFileUrl();
+    /**
+     * A single small container (for e.g the additional metadata of the project itself, regenerated on each build) is the
+     * most common change once the module got indexed, & does not warrant copying the whole index
+     */
+    private boolean canUpdateInPlace(final List<MetadataContainerInfo> toProcess,
+                                     final List<MetadataContainerInfo> containersToRemove) {
+        if (CollectionUtils.isNotEmpty(containersToRemove) || toProcess.size() != 1 || this.index == MetadataIndex.EMPTY) {
+            return false;
+        }
+        final VirtualFile metadataFile = toProcess.get(0).getMetadataFile();
+        return metadataFile != null && metadataFile.getLength() <= IN_PLACE_UPDATE_MAX_BYTES;
+    }
 
-            try (final var inputStream = metadataContainerInfo.getMetadataFile().getInputStream()) {
-                final SpringConfigurationMetadata springConfigurationMetadata = JsonUtil.fromJson(inputStream, SpringConfigurationMetadata.class);
+    /**
+     * Merges the container into the published generation, rather than copying the whole index for a (small) container
+     */
+    private void updateContainerInPlace(final ProgressIndicator indicator, final MetadataContainerInfo metadataContainerInfo) {
+        final MetadataIndex currentIndex = this.index;
+        final String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
+        LogUtil.debug(() -> log.debug("Updating index " + currentIndex + " in place with " + containerPath));
 
-                this.buildMetadataHierarchy(metadataContainerInfo, springConfigurationMetadata);
+        final MetadataContainerCache containerCache = MetadataContainerCache.getInstance();
+        final CompletableFuture<SharedMetadataContainer> acquisition = containerCache.acquireAll(singletonList(metadataContainerInfo)).get(0);
+        final SharedMetadataContainer sharedContainer;
+        try {
+            sharedContainer = awaitAcquisition(acquisition, indicator);
+        } catch (final CompletionException e) {
+            currentIndex.updateInPlace(() -> {
+                this.onContainerFailure(currentIndex, metadataContainerInfo, e.getCause());
+                return null;
+            });
+            return;
+        } catch (final ProcessCanceledException e) {
+            acquisition.thenAccept(containerCache::release);
+            throw e;
+        }
 
-                this.moduleNameToSeenContainerPathToContainerInfo.put(metadataContainerInfo.getContainerArchiveOrFileRef(), metadataContainerInfo);
+        try {
+            DumbService.getInstance(this.module.getProject())
+                    .runReadActionInSmartMode(() -> this.mergeInPlace(currentIndex, metadataContainerInfo, sharedContainer));
+        } catch (final UncheckedIOException e) {
+            currentIndex.updateInPlace(() -> {
+                this.onContainerFailure(currentIndex, metadataContainerInfo, e.getCause());
+                return null;
+            });
+        } catch (final ProcessCanceledException e) {
+            // container is only partially merged, lets drop it so that the next run starts over
+            currentIndex.updateInPlace(() -> {
+                this.removeReferences(currentIndex, metadataContainerInfo);
+                return null;
+            });
+            throw e;
+        } finally {
+            containerCache.release(sharedContainer);
+        }
+    }
 
+    /**
+     * Merges the container into the published generation, while searches keep running against it. See
+     * {@link MetadataIndex#updateInPlace}
+     *
+     * @throws UncheckedIOException if the container could not be replayed
+     */
+    void mergeInPlace(final MetadataIndex currentIndex, final MetadataContainerInfo metadataContainerInfo,
+                      final SharedMetadataContainer sharedContainer) {
+        currentIndex.updateInPlace(() -> {
+            try {
+                this.mergeContainer(currentIndex, metadataContainerInfo, sharedContainer);
             } catch (final IOException e) {
-                log.error("Exception encountered while processing metadata file: " + metadataFilePath, e);
-                this.removeReferences(metadataContainerInfo);
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Merges the container into the generation, replacing whatever an earlier version of the container contributed
+     */
+    void mergeContainer(final MetadataIndex nextIndex, final MetadataContainerInfo metadataContainerInfo,
+                        final SharedMetadataContainer sharedContainer) throws IOException {
+        final String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
+        // lets remove existing references from search index, as these files are modified, so that we can rebuild index
+        if (this.moduleNameToSeenContainerPathToContainerInfo.containsKey(containerPath)) {
+            this.removeReferences(nextIndex, metadataContainerInfo);
+        }
+
+        final ContainerIndexingMetrics metrics = this.buildMetadataHierarchy(nextIndex, metadataContainerInfo, sharedContainer);
+        this.moduleNameToSeenContainerPathToContainerInfo.put(containerPath, metadataContainerInfo);
+        synchronized (this.containerPathToMetrics) {
+            this.containerPathToMetrics.put(containerPath, metrics);
+        }
+    }
+
+    private void publish(final MetadataIndex nextIndex) {
+        this.index = nextIndex;
+        LogUtil.debug(() -> log.debug("Published index " + nextIndex + " for module " + this.module.getName()));
+    }
+
+    private void onContainerFailure(final MetadataIndex nextIndex, final MetadataContainerInfo metadataContainerInfo,
+                                    final Throwable cause) {
+        log.error("Exception encountered while processing metadata file: " + metadataContainerInfo.getFileUrl(), cause);
+        MetadataSnapshotStore.invalidate(metadataContainerInfo);
+        this.removeReferences(nextIndex, metadataContainerInfo);
+    }
+
+    /**
+     * Waits for the container to be loaded, while staying responsive to cancellation
+     *
+     * @throws CompletionException if the container could not be loaded
+     */
+    private static SharedMetadataContainer awaitAcquisition(final CompletableFuture<SharedMetadataContainer> acquisition,
+                                                            final ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                return acquisition.get(ACQUISITION_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                // still loading, lets check for cancellation & wait again
+            } catch (final ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
             }
         }
     }
 
-    private void removeReferences(final MetadataContainerInfo metadataContainerInfo) {
+    private void removeReferences(final MetadataIndex nextIndex, final MetadataContainerInfo metadataContainerInfo) {
         LogUtil.debug(() -> log.debug("Removing references to " + metadataContainerInfo));
 
         final String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
         this.moduleNameToSeenContainerPathToContainerInfo.remove(containerPath);
 
-        final Iterator<String> searchIndexIterator = this.moduleNameToRootSearchIndex.keySet().iterator();
-
-        while (searchIndexIterator.hasNext()) {
-            final MetadataSuggestionNode root = this.moduleNameToRootSearchIndex.get(searchIndexIterator.next());
-            if (root != null) {
-                final boolean removeTree = root.removeRefCascadeDown(metadataContainerInfo.getContainerArchiveOrFileRef());
-                if (removeTree) {
-                    searchIndexIterator.remove();
-                }
-            }
+        nextIndex.removeContainer(containerPath);
+        synchronized (this.containerPathToMetrics) {
+            this.containerPathToMetrics.remove(containerPath);
         }
-
     }
 
-    private void buildMetadataHierarchy(final MetadataContainerInfo metadataContainerInfo,
-                                        final SpringConfigurationMetadata springConfigurationMetadata) {
+    ContainerIndexingMetrics buildMetadataHierarchy(final MetadataIndex nextIndex, final MetadataContainerInfo metadataContainerInfo,
+                                                    final SharedMetadataContainer sharedContainer) throws IOException {
         LogUtil.debug(() -> log.debug("Adding container to index " + metadataContainerInfo));
+        final long startedAt = System.nanoTime();
 
         final String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
-        this.addGroupsToIndex(springConfigurationMetadata, containerPath);
-        this.addPropertiesToIndex(springConfigurationMetadata, containerPath);
-        this.addHintsToIndex(springConfigurationMetadata, containerPath);
+        final ContainerIndexingMetrics.ContainerIndexingMetricsBuilder metrics = ContainerIndexingMetrics.builder()
+                .containerPath(containerPath)
+                .bytesRead(sharedContainer.getBytesRead())
+                .loadedFromSnapshot(sharedContainer.isLoadedFromSnapshot())
+                .parseTimeMillis(sharedContainer.getParseTimeMillis());
+
+        sharedContainer.replay(nextIndex.getStringPool(), new SpringConfigurationMetadataHandler() {
+            private int groups;
+            private int properties;
+            private int hints;
+
+            @Override
+            public void onGroup(final SpringConfigurationMetadataGroup group) {
+                SuggestionServiceImpl.this.addGroupToIndex(nextIndex, group, containerPath);
+                metrics.groups(++this.groups);
+            }
+
+            @Override
+            public void onProperty(final SpringConfigurationMetadataProperty property) {
+                SuggestionServiceImpl.this.addPropertyToIndex(nextIndex, property, containerPath);
+                metrics.properties(++this.properties);
+            }
+
+            @Override
+            public void onHint(final SpringConfigurationMetadataHint hint) {
+                SuggestionServiceImpl.this.addHintToIndex(nextIndex, hint, containerPath);
+                metrics.hints(++this.hints);
+            }
+        });
 
         LogUtil.debug(() -> log.debug("Done adding container to index"));
+        return metrics.buildTimeMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).build();
     }
 
-    private void addGroupsToIndex(final SpringConfigurationMetadata springConfigurationMetadata, final String containerArchiveOrFileRef) {
-        final var springConfigurationMetadataGroups = springConfigurationMetadata.getGroups();
-        if (springConfigurationMetadataGroups == null) {
-            return;
-        }
+    private void addGroupToIndex(final MetadataIndex nextIndex, final SpringConfigurationMetadataGroup springConfigurationMetadataGroup, final String containerArchiveOrFileRef) {
+        final String[] pathSegments = toSanitizedPathSegments(springConfigurationMetadataGroup.getName());
+        final String[] rawPathSegments = toRawPathSegments(springConfigurationMetadataGroup.getName());
 
-        springConfigurationMetadataGroups.sort(comparing(SpringConfigurationMetadataGroup::getName));
+        MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(nextIndex.getRootSearchIndex(), pathSegments, Boolean.FALSE);
 
-        springConfigurationMetadataGroups.forEach(springConfigurationMetadataGroup -> {
-            final String[] pathSegments = toSanitizedPathSegments(springConfigurationMetadataGroup.getName());
-            final String[] rawPathSegments = toRawPathSegments(springConfigurationMetadataGroup.getName());
+        final int startIndex;
+        if (closestMetadata == null) { // path does not have a corresponding root element
+            // lets build just the root element. Rest of the path segments will be taken care of by the addChildren method
+            final boolean onlyRootSegmentExists = pathSegments.length == 1;
+            final MetadataNonPropertySuggestionNode newGroupSuggestionNode = MetadataNonPropertySuggestionNode
+                    .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef, nextIndex.getStringPool());
 
-            MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(this.moduleNameToRootSearchIndex, pathSegments, Boolean.FALSE);
+            if (onlyRootSegmentExists) {
+                newGroupSuggestionNode.setGroup(this.module, springConfigurationMetadataGroup);
+            }
 
-            final int startIndex;
-            if (closestMetadata == null) { // path does not have a corresponding root element
-                // lets build just the root element. Rest of the path segments will be taken care of by the addChildren method
-                final boolean onlyRootSegmentExists = pathSegments.length == 1;
-                final MetadataNonPropertySuggestionNode newGroupSuggestionNode = MetadataNonPropertySuggestionNode
-                        .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
+            nextIndex.putRoot(nextIndex.getStringPool().intern(pathSegments[0]), newGroupSuggestionNode);
+            closestMetadata = newGroupSuggestionNode;
+            // since we already handled the root level item, let addChildren start from index 1 of pathSegments
+            startIndex = 1;
+        } else {
+            startIndex = closestMetadata.numOfHopesToRoot() + 1;
+        }
 
-                if (onlyRootSegmentExists) {
-                    newGroupSuggestionNode.setGroup(this.module, springConfigurationMetadataGroup);
-                }
+        if (closestMetadata.isProperty()) {
+            log.warn("Detected conflict between an existing metadata property & new group for suggestion path " +
+                    closestMetadata.getPathFromRoot() + ". Ignoring new group. Existing Property belongs to (" +
+                    String.join(",", closestMetadata.getBelongsTo()) + "), New Group belongs to " + containerArchiveOrFileRef);
+        } else {
+            // lets add container as a reference till root
+            final MetadataNonPropertySuggestionNode groupSuggestionNode = (MetadataNonPropertySuggestionNode) closestMetadata;
+            groupSuggestionNode.addRefCascadeTillRoot(containerArchiveOrFileRef);
 
-                this.moduleNameToRootSearchIndex.put(pathSegments[0], newGroupSuggestionNode);
-                closestMetadata = newGroupSuggestionNode;
-                // since we already handled the root level item, let addChildren start from index 1 of pathSegments
-                startIndex = 1;
+            final boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+            final MetadataNonPropertySuggestionNode contributedNode;
+            if (haveMoreSegmentsLeft) {
+                contributedNode = groupSuggestionNode.addChildren(this.module, springConfigurationMetadataGroup, rawPathSegments, startIndex,
+                        containerArchiveOrFileRef, nextIndex.getStringPool());
             } else {
-                startIndex = closestMetadata.numOfHopesToRoot() + 1;
+                // Node is an intermediate node that has neither group nor property assigned to it, lets assign this group to it
+                // Can happen when `a.b.c` is already added to the metadata tree from an earlier metadata source & now we are trying to add a group for `a.b`
+                // In this e.g, startIndex would be 2. So, there is no point in adding children. We only need to update the tree appropriately
+                groupSuggestionNode.setGroup(this.module, springConfigurationMetadataGroup);
+                contributedNode = groupSuggestionNode;
             }
+            nextIndex.recordContribution(containerArchiveOrFileRef, contributedNode);
+        }
+    }
 
-            if (closestMetadata.isProperty()) {
-                log.warn("Detected conflict between an existing metadata property & new group for suggestion path " +
-                        closestMetadata.getPathFromRoot() + ". Ignoring new group. Existing Property belongs to (" +
-                        String.join(",", closestMetadata.getBelongsTo()) + "), New Group belongs to " + containerArchiveOrFileRef);
+    private void addPropertyToIndex(final MetadataIndex nextIndex, final SpringConfigurationMetadataProperty property, final String containerArchiveOrFileRef) {
+        final String[] pathSegments = toSanitizedPathSegments(property.getName());
+        final String[] rawPathSegments = toRawPathSegments(property.getName());
+        MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(nextIndex.getRootSearchIndex(), pathSegments, Boolean.FALSE);
+
+        final int startIndex;
+        if (closestMetadata == null) { // path does not have a corresponding root element
+            final boolean onlyRootSegmentExists = pathSegments.length == 1;
+            if (onlyRootSegmentExists) {
+                closestMetadata = MetadataPropertySuggestionNode.newInstance(rawPathSegments[0], property, null,
+                        containerArchiveOrFileRef, nextIndex.getStringPool());
             } else {
-                // lets add container as a reference till root
-                final MetadataNonPropertySuggestionNode groupSuggestionNode = (MetadataNonPropertySuggestionNode) closestMetadata;
-                groupSuggestionNode.addRefCascadeTillRoot(containerArchiveOrFileRef);
-
-                final boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
-                if (haveMoreSegmentsLeft) {
-                    groupSuggestionNode.addChildren(this.module, springConfigurationMetadataGroup, rawPathSegments, startIndex, containerArchiveOrFileRef);
-                } else {
-                    // Node is an intermediate node that has neither group nor property assigned to it, lets assign this group to it
-                    // Can happen when `a.b.c` is already added to the metadata tree from an earlier metadata source & now we are trying to add a group for `a.b`
-                    // In this e.g, startIndex would be 2. So, there is no point in adding children. We only need to update the tree appropriately
-                    groupSuggestionNode.setGroup(this.module, springConfigurationMetadataGroup);
-                }
+                closestMetadata = MetadataNonPropertySuggestionNode.newInstance(rawPathSegments[0], null,
+                        containerArchiveOrFileRef, nextIndex.getStringPool());
             }
-        });
-
-    }
 
-    private void addPropertiesToIndex(final SpringConfigurationMetadata springConfigurationMetadata, final String containerArchiveOrFileRef) {
-        final List<SpringConfigurationMetadataProperty> properties = springConfigurationMetadata.getProperties();
-        if (Objects.isNull(properties)) {
-            return;
+            nextIndex.putRoot(nextIndex.getStringPool().intern(pathSegments[0]), closestMetadata);
+            // since we already handled the root level item, let addChildren start from index 1 of pathSegments
+            startIndex = 1;
+        } else {
+            startIndex = closestMetadata.numOfHopesToRoot() + 1;
         }
 
-        properties.sort(comparing(SpringConfigurationMetadataProperty::getName));
-
-        properties.forEach(property -> {
-            final String[] pathSegments = toSanitizedPathSegments(property.getName());
-            final String[] rawPathSegments = toRawPathSegments(property.getName());
-            MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(this.moduleNameToRootSearchIndex, pathSegments, Boolean.FALSE);
-
-            final int startIndex;
-            if (closestMetadata == null) { // path does not have a corresponding root element
-                final boolean onlyRootSegmentExists = pathSegments.length == 1;
-                if (onlyRootSegmentExists) {
-                    closestMetadata = MetadataPropertySuggestionNode.newInstance(rawPathSegments[0], property, null, containerArchiveOrFileRef);
-                } else {
-                    closestMetadata = MetadataNonPropertySuggestionNode.newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
-                }
-
-                this.moduleNameToRootSearchIndex.put(pathSegments[0], closestMetadata);
-                // since we already handled the root level item, let addChildren start from index 1 of pathSegments
-                startIndex = 1;
+        final boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+        if (haveMoreSegmentsLeft) {
+            if (closestMetadata.isProperty()) {
+                log.warn("Detected conflict between a new group & existing property for suggestion path " + closestMetadata.getPathFromRoot() +
+                        ". Ignoring property. Existing non property node belongs to (" + String.join(",", closestMetadata.getBelongsTo()) +
+                        "), New property belongs to " + containerArchiveOrFileRef);
             } else {
-                startIndex = closestMetadata.numOfHopesToRoot() + 1;
+                nextIndex.recordContribution(containerArchiveOrFileRef,
+                        ((MetadataNonPropertySuggestionNode) closestMetadata).addChildren(property, rawPathSegments, startIndex,
+                                containerArchiveOrFileRef, nextIndex.getStringPool()));
             }
 
-            final boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
-            if (haveMoreSegmentsLeft) {
-                if (closestMetadata.isProperty()) {
-                    log.warn("Detected conflict between a new group & existing property for suggestion path " + closestMetadata.getPathFromRoot() +
-                            ". Ignoring property. Existing non property node belongs to (" + String.join(",", closestMetadata.getBelongsTo()) +
-                            "), New property belongs to " + containerArchiveOrFileRef);
-                } else {
-                    ((MetadataNonPropertySuggestionNode) closestMetadata).addChildren(property, rawPathSegments, startIndex, containerArchiveOrFileRef);
-                }
-
+        } else {
+            if (closestMetadata.isProperty()) {
+                closestMetadata.addRefCascadeTillRoot(containerArchiveOrFileRef);
+                nextIndex.recordContribution(containerArchiveOrFileRef, closestMetadata);
+                log.debug("Detected a duplicate metadata property for suggestion path " + closestMetadata.getPathFromRoot() +
+                        ". Ignoring property. Existing property belongs to (" + String.join(",", closestMetadata.getBelongsTo()) +
+                        "), New property belongs to " + containerArchiveOrFileRef);
             } else {
-                if (closestMetadata.isProperty()) {
-                    closestMetadata.addRefCascadeTillRoot(containerArchiveOrFileRef);
-                    log.debug("Detected a duplicate metadata property for suggestion path " + closestMetadata.getPathFromRoot() +
-                            ". Ignoring property. Existing property belongs to (" + String.join(",", closestMetadata.getBelongsTo()) +
-                            "), New property belongs to " + containerArchiveOrFileRef);
-                } else {
-                    log.warn("Detected conflict between a new metadata property & existing non property node for suggestion path " +
-                            closestMetadata.getPathFromRoot() + ". Ignoring property. Existing non property node belongs to (" +
-                            String.join(",", closestMetadata.getBelongsTo()) + "), New property belongs to " + containerArchiveOrFileRef);
-                }
+                log.warn("Detected conflict between a new metadata property & existing non property node for suggestion path " +
+                        closestMetadata.getPathFromRoot() + ". Ignoring property. Existing non property node belongs to (" +
+                        String.join(",", closestMetadata.getBelongsTo()) + "), New property belongs to " + containerArchiveOrFileRef);
             }
-
-        });
-    }
-
-    private void addHintsToIndex(final SpringConfigurationMetadata springConfigurationMetadata, final String containerPath) {
-        final List<SpringConfigurationMetadataHint> hints = springConfigurationMetadata.getHints();
-        if (hints == null) {
-            return;
         }
+    }
 
-        hints.sort(comparing(SpringConfigurationMetadataHint::getName));
-
-        hints.forEach(hint -> {
-            final String[] pathSegments = toSanitizedPathSegments(hint.getExpectedPropertyName());
-            final MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(this.moduleNameToRootSearchIndex, pathSegments, Boolean.TRUE);
+    private void addHintToIndex(final MetadataIndex nextIndex, final SpringConfigurationMetadataHint hint, final String containerPath) {
+        final String[] pathSegments = toSanitizedPathSegments(hint.getExpectedPropertyName());
+        final MetadataSuggestionNode closestMetadata = this.findDeepestMetadataMatch(nextIndex.getRootSearchIndex(), pathSegments, Boolean.TRUE);
 
-            if (Objects.nonNull(closestMetadata)) {
-                if (closestMetadata.isProperty()) {
-                    final MetadataPropertySuggestionNode propertySuggestionNode = (MetadataPropertySuggestionNode) closestMetadata;
-                    if (hint.representsValueOfMap()) {
-                        propertySuggestionNode.getProperty().setValueHint(hint);
-                    } else {
-                        propertySuggestionNode.getProperty().setGenericOrKeyHint(hint);
-                    }
-                } else {
-                    log.warn("Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata.getPathFromRoot() +
-                            " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to (" +
-                            String.join(",", closestMetadata.getBelongsTo()) + "), New hint belongs " + containerPath);
-                }
+        if (Objects.nonNull(closestMetadata)) {
+            if (closestMetadata.isProperty()) {
+                // node belongs to the generation being built, but its property might be shared with the published one
+                final MetadataPropertySuggestionNode propertySuggestionNode = (MetadataPropertySuggestionNode) closestMetadata;
+                propertySuggestionNode.setProperty(propertySuggestionNode.getProperty().withHint(hint));
+            } else {
+                log.warn("Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata.getPathFromRoot() +
+                        " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to (" +
+                        String.join(",", closestMetadata.getBelongsTo()) + "), New hint belongs " + containerPath);
             }
-        });
-
+        }
     }
 
     private MetadataSuggestionNode findDeepestMetadataMatch(final Map<String, MetadataSuggestionNode> roots,
@@ -561,7 +1140,7 @@ public class SuggestionServiceImpl implements SuggestionService {
     private String toTree() {
         final var builder = new StringBuilder();
 
-        this.moduleNameToRootSearchIndex.forEach((key, value) ->
+        this.index.getRootSearchIndex().forEach((key, value) ->
                 builder.append("Module: ").append(key).append(StringUtils.LF)
                         .append(value.toTree().trim()
                                 .replaceFirst("^", "  ")
@@ -0,0 +1,183 @@
+package in.oneton.idea.spring.assistant.plugin.misc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+class PropertyKeyTokenizerTest {
+
+    /**
+     * Regex based placeholder matching the tokenizer replaced
+     */
+    private static final Pattern LEGACY_PLACEHOLDER_PATTERN = Pattern.compile("^(\"?\\$\\{)(.*)(:?)(.*)(}\"?)");
+    private static final String RANDOM_KEY_CHARS = "aZ.-_[]09 \t:${}\"\nÄ";
+    private static final int RANDOM_KEYS = 20_000;
+
+    @Test
+    void sanitise() {
+        Assertions.assertEquals("datasourceurl", PropertyKeyTokenizer.sanitise("data-Source_Url"));
+        Assertions.assertEquals("datasource", PropertyKeyTokenizer.sanitise("  dataSource\t"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.sanitise("-_"));
+        Assertions.assertEquals("ärgerx", PropertyKeyTokenizer.sanitise("Ärger_X"));
+        Assertions.assertEquals("source", PropertyKeyTokenizer.sanitise("data.So-urce", 5, 12));
+
+        final String sanitised = "spring";
+        Assertions.assertSame(sanitised, PropertyKeyTokenizer.sanitise(sanitised));
+    }
+
+    @Test
+    void toSanitisedSegments() {
+        Assertions.assertArrayEquals(new String[]{"spring", "datasource", "url"},
+                PropertyKeyTokenizer.toSanitisedSegments(" spring.data-Source . url "));
+        Assertions.assertArrayEquals(new String[]{"spring", ""}, PropertyKeyTokenizer.toSanitisedSegments("spring."));
+    }
+
+    @Test
+    void toRawSegments() {
+        Assertions.assertArrayEquals(new String[]{"spring", "data-Source", "url"},
+                PropertyKeyTokenizer.toRawSegments(" spring . data-Source.url "));
+        Assertions.assertArrayEquals(new String[]{"a", "b"}, PropertyKeyTokenizer.toRawSegments("a.b\n"));
+    }
+
+    /**
+     * Empty segments are kept, same as {@code split("\\.", -1)}
+     */
+    @Test
+    void toRawSegmentsKeepsEmptySegments() {
+        for (final String key : Arrays.asList("", ".", "a.", ".a", "a..b", "a.b.", "a:b.c")) {
+            Assertions.assertArrayEquals(key.split("\\.", -1), PropertyKeyTokenizer.toRawSegments(key), key);
+        }
+    }
+
+    @Test
+    void toSegmentsWithoutIndexes() {
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), PropertyKeyTokenizer.toSegmentsWithoutIndexes("a.b[0].c[12]"));
+        Assertions.assertEquals(Arrays.asList("a[x]", "b[]"), PropertyKeyTokenizer.toSegmentsWithoutIndexes("a[x].b[]"));
+        Assertions.assertEquals(Arrays.asList("a", ""), PropertyKeyTokenizer.toSegmentsWithoutIndexes("a[1]."));
+    }
+
+    @Test
+    void toCanonicalKey() {
+        Assertions.assertEquals("spring.datasource.url", PropertyKeyTokenizer.toCanonicalKey("spring.dataSource.url"));
+        Assertions.assertEquals("spring.datasource.url", PropertyKeyTokenizer.toCanonicalKey(" spring.data-source.url "));
+        Assertions.assertEquals("spring.datasource.url", PropertyKeyTokenizer.toCanonicalKey("spring.data_source[0].url"));
+        Assertions.assertEquals("a.b[x]", PropertyKeyTokenizer.toCanonicalKey("a.b[x]"));
+        Assertions.assertEquals("a:b.c", PropertyKeyTokenizer.toCanonicalKey("a:b.c"));
+
+        final String canonical = "spring.datasource.url";
+        Assertions.assertSame(canonical, PropertyKeyTokenizer.toCanonicalKey(canonical));
+    }
+
+    /**
+     * Keys of config files are never taken to be environment variables, even when they look like one
+     */
+    @Test
+    void toCanonicalKeyOfUpperCaseKey() {
+        Assertions.assertEquals("serverport", PropertyKeyTokenizer.toCanonicalKey("SERVER_PORT"));
+        Assertions.assertEquals("foo", PropertyKeyTokenizer.toCanonicalKey("FOO"));
+        Assertions.assertEquals("my.list0", PropertyKeyTokenizer.toCanonicalKey("MY.LIST_0"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.toCanonicalKey("  "));
+    }
+
+    @Test
+    void environmentVariableToCanonicalKey() {
+        Assertions.assertEquals("spring.datasource.url",
+                PropertyKeyTokenizer.environmentVariableToCanonicalKey("SPRING_DATASOURCE_URL"));
+        Assertions.assertEquals("server.port", PropertyKeyTokenizer.environmentVariableToCanonicalKey(" SERVER_PORT "));
+        Assertions.assertEquals("foo", PropertyKeyTokenizer.environmentVariableToCanonicalKey("FOO"));
+        Assertions.assertEquals("my.list.name", PropertyKeyTokenizer.environmentVariableToCanonicalKey("MY_LIST_0_NAME"));
+        Assertions.assertEquals("my.list", PropertyKeyTokenizer.environmentVariableToCanonicalKey("MY__LIST_12"));
+    }
+
+    @Test
+    void placeholderKey() {
+        Assertions.assertEquals("key.value", PropertyKeyTokenizer.placeholderKey("${key.value}"));
+        Assertions.assertEquals("key.value", PropertyKeyTokenizer.placeholderKey("\"${key.value}\""));
+        Assertions.assertEquals("key.value", PropertyKeyTokenizer.placeholderKey("${key.value:test}"));
+        Assertions.assertEquals("key.value", PropertyKeyTokenizer.placeholderKey("\"${key.value:test}\""));
+    }
+
+    @Test
+    void placeholderKeyWithDefaultDelimiter() {
+        // only the first `:` delimits the default value
+        Assertions.assertEquals("key", PropertyKeyTokenizer.placeholderKey("${key:http://localhost:8080}"));
+        Assertions.assertEquals("key", PropertyKeyTokenizer.placeholderKey("${key:}"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("${:default}"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("${:}"));
+    }
+
+    @Test
+    void placeholderKeyOfNonPlaceholder() {
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey(""));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("key.value"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("${key.value"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("${key\n.value}"));
+        Assertions.assertEquals("", PropertyKeyTokenizer.placeholderKey("${}"));
+    }
+
+    /**
+     * The tokenizer replaced regex based helpers, which stay the reference for what it is meant to return
+     */
+    @Test
+    void matchesLegacyHelpers_onRandomKeys() {
+        final Random random = new Random(42);
+        for (int i = 0; i < RANDOM_KEYS; i++) {
+            final String key = randomKey(random);
+            Assertions.assertArrayEquals(legacySanitisedSegments(key), PropertyKeyTokenizer.toSanitisedSegments(key), key);
+            Assertions.assertArrayEquals(legacyRawSegments(key), PropertyKeyTokenizer.toRawSegments(key), key);
+            Assertions.assertEquals(legacySanitise(key), PropertyKeyTokenizer.sanitise(key), key);
+            Assertions.assertEquals(legacySegmentsWithoutIndexes(key), PropertyKeyTokenizer.toSegmentsWithoutIndexes(key), key);
+
+            final String placeholder = (random.nextBoolean() ? "${" : "\"${") + key + (random.nextBoolean() ? "}" : "}\"");
+            Assertions.assertEquals(legacyPlaceholderKey(placeholder), PropertyKeyTokenizer.placeholderKey(placeholder), placeholder);
+            Assertions.assertEquals(legacyPlaceholderKey(key), PropertyKeyTokenizer.placeholderKey(key), key);
+        }
+    }
+
+    private static String randomKey(final Random random) {
+        final StringBuilder key = new StringBuilder();
+        final int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            key.append(RANDOM_KEY_CHARS.charAt(random.nextInt(RANDOM_KEY_CHARS.length())));
+        }
+        return key.toString();
+    }
+
+    private static String legacySanitise(final String name) {
+        return name.trim().replaceAll("_", "").replace("-", "").toLowerCase();
+    }
+
+    private static String[] legacySanitisedSegments(final String key) {
+        final String[] splits = key.trim().split("\\.", -1);
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = legacySanitise(splits[i]);
+        }
+        return splits;
+    }
+
+    private static String[] legacyRawSegments(final String key) {
+        final String[] splits = key.trim().split("\\.", -1);
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = splits[i].trim();
+        }
+        return splits;
+    }
+
+    private static List<String> legacySegmentsWithoutIndexes(final String key) {
+        return Arrays.asList(key.replaceAll("\\[\\d+]", "").split("\\.", -1));
+    }
+
+    private static String legacyPlaceholderKey(final String value) {
+        final Matcher matcher = LEGACY_PLACEHOLDER_PATTERN.matcher(value);
+        final String key = matcher.matches() ? matcher.group(2) : "";
+        final String[] split = key.split("\\:");
+        // the legacy helper failed on keys made of `:` only, which have no key
+        return split.length > 0 ? split[0] : "";
+    }
+
+}
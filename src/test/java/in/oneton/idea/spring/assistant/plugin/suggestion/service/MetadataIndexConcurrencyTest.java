@@ -0,0 +1,205 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiElement;
+import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+
+class MetadataIndexConcurrencyTest {
+
+    private static final String STABLE_CONTAINER = "stable.jar";
+    private static final String UPDATED_CONTAINER = "additional-spring-configuration-metadata.json";
+    private static final int ROUNDS = 200;
+    private static final int READERS = 4;
+    private static final int READS_PER_READER = 500;
+    private static final int MAX_SUGGESTIONS = 100;
+    /**
+     * Enough children for `shared` to be held in a hash lookup rather than in arrays
+     */
+    private static final int WIDE_NODE_CHILDREN = 12;
+
+    private SuggestionServiceImpl service;
+    private PsiElement element;
+    private MetadataIndex index;
+    private List<String> stableProperties;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.service = new SuggestionServiceImpl(mock(Module.class));
+        this.element = mock(PsiElement.class);
+
+        this.stableProperties = new ArrayList<>();
+        this.stableProperties.add("shared.nested.stable-two");
+        this.stableProperties.add("stable.root");
+        for (int i = 0; i < WIDE_NODE_CHILDREN; i++) {
+            this.stableProperties.add("shared.stable-" + i);
+        }
+
+        this.index = MetadataIndex.EMPTY.newGeneration();
+        this.merge(STABLE_CONTAINER, this.stableProperties.toArray(new String[0]));
+        this.merge(UPDATED_CONTAINER, updatedProperties(0));
+    }
+
+    @Test
+    void readersSeeExactlyOneRound_whileAnotherContainerIsUpdatedInPlace() throws InterruptedException {
+        final Queue<Throwable> failures = this.runConcurrently(() -> {
+            int lastRound = 0;
+            for (int i = 0; i < READS_PER_READER; i++) {
+                // a reader that raced an update fails its assertions, but is run again rather than failing the test
+                final int round = this.index.read(readIndex -> {
+                    this.assertConsistent(readIndex);
+                    return readIndex.getModificationCount();
+                });
+                Assertions.assertTrue(round >= lastRound, "Went back from round " + lastRound + " to " + round);
+                lastRound = round;
+            }
+        });
+
+        Assertions.assertTrue(failures.isEmpty(), () -> "Concurrent access failed: " + failures);
+        Assertions.assertEquals(ROUNDS, this.index.getModificationCount());
+        this.index.read(readIndex -> {
+            this.assertConsistent(readIndex);
+            return null;
+        });
+    }
+
+    @Test
+    void searchesSeeExactlyOneRound_whileAnotherContainerIsUpdatedInPlace() throws InterruptedException {
+        final Queue<Throwable> failures = this.runConcurrently(() -> {
+            int lastRound = 0;
+            for (int i = 0; i < READS_PER_READER; i++) {
+                final List<String> nested = this.search("shared.nested");
+                Assertions.assertTrue(nested.contains("shared.nested.stable-two"), () -> "Stable key missing in " + nested);
+                lastRound = assertSingleRound(nested, "shared.nested.volatile-", lastRound);
+
+                final List<String> wide = this.search("shared.vol");
+                lastRound = assertSingleRound(wide, "shared.volatile-", lastRound);
+
+                final List<String> roots = this.search("volatile");
+                lastRound = assertSingleRound(roots, "volatile.root-", lastRound);
+
+                // no root matches, so the search goes through the segment index
+                final List<String> midPath = this.search("nested.vol");
+                lastRound = assertSingleRound(midPath, "shared.nested.volatile-", lastRound);
+            }
+        });
+
+        Assertions.assertTrue(failures.isEmpty(), () -> "Concurrent search failed: " + failures);
+        Assertions.assertEquals(ROUNDS, this.index.getModificationCount());
+        Assertions.assertEquals(ROUNDS, assertSingleRound(this.search("volatile"), "volatile.root-", 0));
+    }
+
+    private static String[] updatedProperties(final int round) {
+        return new String[]{"shared.volatile-" + round, "shared.nested.volatile-" + round, "volatile.root-" + round};
+    }
+
+    private void merge(final String containerPath, final String... propertyNames) throws IOException {
+        final SharedMetadataContainer container = MetadataIndexFixture.newContainer(containerPath, propertyNames);
+        this.service.mergeContainer(this.index, container.getContainerInfo(), container);
+    }
+
+    /**
+     * Runs the readers against a writer that replaces the updated container in place for each of the rounds, all starting
+     * at once
+     *
+     * @return failures of the readers & the writer
+     */
+    private Queue<Throwable> runConcurrently(final ThrowingRunnable reader) throws InterruptedException {
+        final CyclicBarrier start = new CyclicBarrier(READERS + 1);
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        threads.add(newThread(start, failures, () -> {
+            for (int round = 1; round <= ROUNDS; round++) {
+                final SharedMetadataContainer container = MetadataIndexFixture.newContainer(UPDATED_CONTAINER, updatedProperties(round));
+                this.service.mergeInPlace(this.index, container.getContainerInfo(), container);
+            }
+        }));
+        for (int i = 0; i < READERS; i++) {
+            threads.add(newThread(start, failures, reader));
+        }
+
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        return failures;
+    }
+
+    /**
+     * Stable keys are always present, along with the keys of the round the generation is at & none of the previous round
+     */
+    private void assertConsistent(final MetadataIndex readIndex) {
+        for (final String key : this.stableProperties) {
+            Assertions.assertNotNull(readIndex.resolveRelaxedKey(key), key);
+        }
+        final int round = readIndex.getModificationCount();
+        for (final String key : updatedProperties(round)) {
+            Assertions.assertNotNull(readIndex.resolveRelaxedKey(key), key);
+        }
+        if (round > 0) {
+            for (final String key : updatedProperties(round - 1)) {
+                Assertions.assertNull(readIndex.resolveRelaxedKey(key), key);
+            }
+        }
+        // the `volatile` root, along with `shared.volatile-*` & `shared.nested.volatile-*` of a single round
+        Assertions.assertEquals(3, readIndex.findNodesWithSegmentPrefix("volatile").stream()
+                .mapToInt(List::size)
+                .sum());
+    }
+
+    /**
+     * @return round of the only key with the given prefix, which must not be older than {@code lastRound}
+     */
+    private static int assertSingleRound(final List<String> lookupStrings, final String keyPrefix, final int lastRound) {
+        Assertions.assertEquals(lookupStrings.stream().distinct().count(), lookupStrings.size(),
+                () -> "Duplicate suggestions in " + lookupStrings);
+        final List<String> keys = lookupStrings.stream()
+                .filter(lookupString -> lookupString.startsWith(keyPrefix))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(1, keys.size(), () -> "Expected a single " + keyPrefix + "* in " + lookupStrings);
+
+        final int round = Integer.parseInt(keys.get(0).substring(keyPrefix.length()));
+        Assertions.assertTrue(round >= lastRound, "Went back from round " + lastRound + " to " + round);
+        return round;
+    }
+
+    private List<String> search(final String query) {
+        final List<LookupElement> lookupElements = new ArrayList<>();
+        final boolean truncated = this.service.findSuggestionsForQueryPrefix(this.index, MAX_SUGGESTIONS, FileType.PROPERTIES,
+                this.element, null, null, query, null, lookupElements::add);
+        Assertions.assertFalse(truncated, () -> "Search for " + query + " got truncated");
+        return lookupElements.stream()
+                .map(LookupElement::getLookupString)
+                .collect(Collectors.toList());
+    }
+
+    private static Thread newThread(final CyclicBarrier start, final Queue<Throwable> failures, final ThrowingRunnable body) {
+        return new Thread(() -> {
+            try {
+                start.await();
+                body.run();
+            } catch (final Throwable e) {
+                failures.add(e);
+            }
+        });
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+}
@@ -0,0 +1,37 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataContainerInfo;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.json.SpringConfigurationMetadataProperty;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.snapshot.MetadataSnapshotCodec;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+
+/**
+ * Builds indexes the way the indexer does, from containers that only hold the given properties
+ */
+@UtilityClass
+class MetadataIndexFixture {
+
+    static SharedMetadataContainer newContainer(final String containerPath, final String... propertyNames) throws IOException {
+        final MetadataSnapshotCodec.Encoder encoder = new MetadataSnapshotCodec.Encoder();
+        for (final String propertyName : propertyNames) {
+            final SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+            property.setName(propertyName);
+            encoder.onProperty(property);
+        }
+
+        final SharedMetadataContainer container = new SharedMetadataContainer(MetadataContainerInfo.builder()
+                .containerArchiveOrFileRef(containerPath)
+                .build());
+        container.setPayload(encoder.toByteArray(), 0, 0, false);
+        return container;
+    }
+
+    static void addContainer(final SuggestionServiceImpl service, final MetadataIndex index, final String containerPath,
+                             final String... propertyNames) throws IOException {
+        final SharedMetadataContainer container = newContainer(containerPath, propertyNames);
+        service.buildMetadataHierarchy(index, container.getContainerInfo(), container);
+    }
+
+}
@@ -0,0 +1,57 @@
+package in.oneton.idea.spring.assistant.plugin.suggestion.service;
+
+import com.intellij.openapi.module.Module;
+import in.oneton.idea.spring.assistant.plugin.suggestion.metadata.MetadataSuggestionNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.mockito.Mockito.mock;
+
+class MetadataIndexTest {
+
+    private MetadataIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.index = MetadataIndex.EMPTY.newGeneration();
+        MetadataIndexFixture.addContainer(new SuggestionServiceImpl(mock(Module.class)), this.index, "spring-boot-autoconfigure.jar",
+                "spring.datasource.url", "server.max-http-header-size", "logging.level");
+    }
+
+    @Test
+    void resolveRelaxedKey() {
+        final MetadataSuggestionNode node = this.index.read(readIndex -> readIndex.resolveRelaxedKey("server.max-http-header-size"));
+        Assertions.assertNotNull(node);
+        Assertions.assertSame(node, this.index.read(readIndex -> readIndex.resolveRelaxedKey("server.maxHttpHeaderSize")));
+        Assertions.assertSame(node, this.index.read(readIndex -> readIndex.resolveRelaxedKey("server.max_http_header_size")));
+        Assertions.assertNull(this.index.read(readIndex -> readIndex.resolveRelaxedKey("server.max-http-header")));
+    }
+
+    @Test
+    void resolveEnvironmentVariable() {
+        final MetadataSuggestionNode url = this.index.read(readIndex -> readIndex.resolveRelaxedKey("spring.datasource.url"));
+        Assertions.assertNotNull(url);
+        Assertions.assertSame(url, this.index.read(readIndex -> readIndex.resolveEnvironmentVariable("SPRING_DATASOURCE_URL")));
+
+        final MetadataSuggestionNode maxHttpHeaderSize = this.index.read(readIndex -> readIndex.resolveRelaxedKey("server.max-http-header-size"));
+        Assertions.assertSame(maxHttpHeaderSize, this.index.read(readIndex -> readIndex.resolveEnvironmentVariable("SERVER_MAXHTTPHEADERSIZE")));
+        // `_` always delimits segments of an environment variable, so dashes of a key can not be spelt with them
+        Assertions.assertNull(this.index.read(readIndex -> readIndex.resolveEnvironmentVariable("SERVER_MAX_HTTP_HEADER_SIZE")));
+
+        // numeric segments are array indexes
+        final MetadataSuggestionNode level = this.index.read(readIndex -> readIndex.resolveRelaxedKey("logging.level"));
+        Assertions.assertNotNull(level);
+        Assertions.assertSame(level, this.index.read(readIndex -> readIndex.resolveEnvironmentVariable("LOGGING_LEVEL_0")));
+
+        Assertions.assertNull(this.index.read(readIndex -> readIndex.resolveEnvironmentVariable("SPRING_DATASOURCE_USERNAME")));
+    }
+
+    @Test
+    void resolveRelaxedKey_doesNotTakeConfigFileKeysForEnvironmentVariables() {
+        Assertions.assertNull(this.index.read(readIndex -> readIndex.resolveRelaxedKey("SPRING_DATASOURCE_URL")));
+    }
+
+}
@@ -1,17 +1,30 @@
 package in.oneton.idea.spring.assistant.plugin.suggestion.service;
 
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.module.Module;
+import com.intellij.psi.PsiElement;
+import in.oneton.idea.spring.assistant.plugin.suggestion.completion.FileType;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+
 // TODO: Fix this
 @ExtendWith(MockitoExtension.class)
 class SuggestionServiceImplTest {
 
     @Mock
     Module mockedModule;
+    @Mock
+    PsiElement mockedElement;
     SuggestionServiceImpl suggestionIndexService;
 
     @BeforeEach
@@ -27,6 +40,47 @@ class SuggestionServiceImplTest {
     void getSuggestions() {
     }
 
+    @Test
+    void findSuggestionsForQueryPrefix_keepsShallowerKeys_overKeysEarlierByPath() throws IOException {
+        final MetadataIndex index = MetadataIndex.EMPTY.newGeneration();
+        MetadataIndexFixture.addContainer(this.suggestionIndexService, index, "spring-boot-autoconfigure.jar",
+                "server.pa.nested.one", "server.pb.nested.two", "server.pc.nested.three", "server.port");
+
+        final List<String> suggestions = new ArrayList<>();
+        final boolean truncated = this.findSuggestions(index, 2, "server.p", suggestions);
+
+        // server.port is the last of the keys by path, but the only one right below `server`
+        Assertions.assertTrue(truncated);
+        Assertions.assertEquals(asList("server.port", "server.pa.nested.one"), suggestions);
+    }
+
+    @Test
+    void findSuggestionsForQueryPrefix_keepsExactLastSegmentMatches_overKeysEarlierByPath() throws IOException {
+        final MetadataIndex index = MetadataIndex.EMPTY.newGeneration();
+        MetadataIndexFixture.addContainer(this.suggestionIndexService, index, "spring-boot-autoconfigure.jar",
+                "aa.x.portal", "aa.x.portable", "bb.xa.port");
+
+        final List<String> suggestions = new ArrayList<>();
+        // no root matches `x`, so `aa.x` & `bb.xa` are both searched, in that order
+        final boolean truncated = this.findSuggestions(index, 1, "x.port", suggestions);
+
+        Assertions.assertTrue(truncated);
+        Assertions.assertEquals(asList("bb.xa.port"), suggestions);
+    }
+
+    @Test
+    void findSuggestionsForQueryPrefix_handsOutAllSuggestions_whenWithinLimit() throws IOException {
+        final MetadataIndex index = MetadataIndex.EMPTY.newGeneration();
+        MetadataIndexFixture.addContainer(this.suggestionIndexService, index, "spring-boot-autoconfigure.jar",
+                "server.pa.nested.one", "server.port", "spring.application.name");
+
+        final List<String> suggestions = new ArrayList<>();
+        final boolean truncated = this.findSuggestions(index, 10, "server.p", suggestions);
+
+        Assertions.assertFalse(truncated);
+        Assertions.assertEquals(asList("server.port", "server.pa.nested.one"), suggestions);
+    }
+
     @Test
     void buildMetadataHierarchy() {
     }
@@ -40,6 +94,17 @@ class SuggestionServiceImplTest {
         //    mockedModule.
     }
 
+    private boolean findSuggestions(final MetadataIndex index, final int maxSuggestions, final String query,
+                                    final List<String> suggestions) {
+        final List<LookupElement> lookupElements = new ArrayList<>();
+        final boolean truncated = this.suggestionIndexService.findSuggestionsForQueryPrefix(index, maxSuggestions,
+                FileType.PROPERTIES, this.mockedElement, null, null, query, null, lookupElements::add);
+        suggestions.addAll(lookupElements.stream()
+                .map(LookupElement::getLookupString)
+                .collect(Collectors.toList()));
+        return truncated;
+    }
+
     class SuggestionServiceImpl extends in.oneton.idea.spring.assistant.plugin.suggestion.service.SuggestionServiceImpl {
 
         SuggestionServiceImpl(final Module module) {